@@ -2,18 +2,22 @@ package org.eclipse.jetty.perf.assertions;
 
 import java.io.BufferedReader;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
-import org.HdrHistogram.AbstractHistogram;
-import org.HdrHistogram.HistogramLogReader;
+import org.HdrHistogram.Histogram;
+import org.eclipse.jetty.perf.histogram.HlogSummary;
+import org.eclipse.jetty.perf.histogram.ThroughputTimeline;
+import org.eclipse.jetty.perf.monitoring.os.LinuxPerfStatMonitor;
 import org.mortbay.jetty.orchestrator.configuration.Node;
 import org.mortbay.jetty.orchestrator.configuration.NodeArrayConfiguration;
 
@@ -21,34 +25,8 @@ public class Assertions
 {
     public static boolean assertHttpClientStatuses(Path reportRootPath, NodeArrayConfiguration nodeArray, long maxErrors) throws IOException
     {
-        List<Map.Entry<Long, String>> counters = new ArrayList<>();
-        long totalNot200Count = 0L;
-        for (Node node : nodeArray.nodes())
-        {
-            Path statusesLog = reportRootPath.resolve(nodeArray.id()).resolve(node.getId()).resolve("http-client-statuses.log");
-            try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(statusesLog.toFile()), StandardCharsets.UTF_8)))
-            {
-                while (true)
-                {
-                    String line = reader.readLine();
-                    if (line == null)
-                        break;
-
-                    int idx = line.indexOf('=');
-                    if (idx == -1)
-                        continue;
-
-                    long count = Long.parseLong(line.substring(0, idx));
-                    String status = line.substring(idx + 1);
-
-                    if (!"200".equals(status))
-                    {
-                        totalNot200Count += count;
-                        counters.add(new AbstractMap.SimpleImmutableEntry<>(count, status));
-                    }
-                }
-            }
-        }
+        List<Map.Entry<Long, String>> counters = loadHttpClientErrors(reportRootPath, nodeArray);
+        long totalNot200Count = counters.stream().mapToLong(Map.Entry::getKey).sum();
 
         System.out.println("  " + nodeArray.id() + " errors = " + totalNot200Count + " vs max allowed = " + maxErrors);
         if (totalNot200Count <= maxErrors)
@@ -67,23 +45,12 @@ public class Assertions
         }
     }
 
-    public static boolean assertThroughput(Path reportRootPath, NodeArrayConfiguration nodeArray, long expectedValue, double errorMargin) throws FileNotFoundException
+    public static boolean assertThroughput(Path reportRootPath, NodeArrayConfiguration nodeArray, long expectedValue, double errorMargin) throws IOException
     {
         long totalCount = 0L;
-        for (Node node : nodeArray.nodes())
+        for (HlogSummary summary : loadSummaries(reportRootPath, nodeArray, "perf.hlog"))
         {
-            Path perfHlog = reportRootPath.resolve(nodeArray.id()).resolve(node.getId()).resolve("perf.hlog");
-            try (HistogramLogReader histogramLogReader = new HistogramLogReader(perfHlog.toFile()))
-            {
-                while (true)
-                {
-                    AbstractHistogram histogram = (AbstractHistogram)histogramLogReader.nextIntervalHistogram();
-                    if (histogram == null)
-                        break;
-
-                    totalCount += histogram.getTotalCount();
-                }
-            }
+            totalCount += summary.getTotalCount();
         }
 
         System.out.println("  " + nodeArray.id() + " throughput is " + totalCount + " vs expected " + expectedValue);
@@ -102,63 +69,223 @@ public class Assertions
         }
     }
 
-    public static boolean assertP99Latency(Path reportRootPath, NodeArrayConfiguration nodeArray, long expectedValue, double errorMargin, int toleratedOutliers) throws FileNotFoundException
+    public static boolean assertMinThroughputRate(Path reportRootPath, NodeArrayConfiguration nodeArray, long minRate) throws IOException
     {
-        // calculate mean p99 value as a basis to eliminate outliers
-        long sum = 0L;
-        long count = 0L;
+        ThroughputTimeline timeline = loadThroughputTimeline(reportRootPath, nodeArray);
+        long actualMinRate = timeline.getMinRate();
+        System.out.println("  " + nodeArray.id() + " min throughput is " + actualMinRate + " req/s vs min allowed " + minRate + " req/s");
+        if (actualMinRate >= minRate)
+        {
+            System.out.println("  OK; value >= " + minRate);
+            return true;
+        }
+        else
+        {
+            System.out.println("  NOK; value < " + minRate);
+            return false;
+        }
+    }
+
+    public static boolean assertThroughputCoefficientOfVariation(Path reportRootPath, NodeArrayConfiguration nodeArray, double maxCoefficientOfVariation) throws IOException
+    {
+        ThroughputTimeline timeline = loadThroughputTimeline(reportRootPath, nodeArray);
+        double cv = timeline.getCoefficientOfVariation();
+        System.out.printf("  %s throughput coefficient of variation is %.4f vs max allowed %.4f%n", nodeArray.id(), cv, maxCoefficientOfVariation);
+        if (cv <= maxCoefficientOfVariation)
+        {
+            System.out.println("  OK; value <= " + maxCoefficientOfVariation);
+            return true;
+        }
+        else
+        {
+            System.out.println("  NOK; value > " + maxCoefficientOfVariation);
+            return false;
+        }
+    }
+
+    /**
+     * @param maxDipSeconds the maximum tolerated number of consecutive intervals under {@link ThroughputTimeline#DIP_RATIO} of the mean rate
+     */
+    public static boolean assertLongestThroughputDip(Path reportRootPath, NodeArrayConfiguration nodeArray, int maxDipSeconds) throws IOException
+    {
+        ThroughputTimeline timeline = loadThroughputTimeline(reportRootPath, nodeArray);
+        int longestDip = timeline.getLongestDip();
+        System.out.printf("  %s longest throughput dip under %.0f req/s is %ds vs max allowed %ds%n", nodeArray.id(), timeline.getMeanRate() * ThroughputTimeline.DIP_RATIO, longestDip, maxDipSeconds);
+        if (longestDip <= maxDipSeconds)
+        {
+            System.out.println("  OK; value <= " + maxDipSeconds);
+            return true;
+        }
+        else
+        {
+            System.out.println("  NOK; value > " + maxDipSeconds);
+            return false;
+        }
+    }
+
+    /**
+     * @return the p99 in microseconds of the {@code perf.hlog} histograms of all nodes of the node array merged together
+     */
+    public static long loadTotalP99(Path reportRootPath, NodeArrayConfiguration nodeArray) throws IOException
+    {
+        Histogram histogram = new Histogram(3);
+        for (HlogSummary summary : loadSummaries(reportRootPath, nodeArray, "perf.hlog"))
+        {
+            histogram.add(summary.getTotalHistogram());
+        }
+        return TimeUnit.NANOSECONDS.toMicros(histogram.getValueAtPercentile(99.0));
+    }
+
+    /**
+     * @param event the name of the event as printed by linux perf, i.e.: {@code context-switches}
+     * @return the sum of the counts of the event in the {@code perf stat} output of all nodes of the node array,
+     * or -1 if it was not counted
+     */
+    public static long loadPerfStatCount(Path reportRootPath, NodeArrayConfiguration nodeArray, String event) throws IOException
+    {
+        long total = -1L;
+        for (Node node : nodeArray.nodes())
+        {
+            Path perfStatLog = reportRootPath.resolve(nodeArray.id()).resolve(node.getId()).resolve(LinuxPerfStatMonitor.DEFAULT_FILENAME);
+            if (!Files.isRegularFile(perfStatLog))
+                continue;
+            for (String line : Files.readAllLines(perfStatLog, StandardCharsets.UTF_8))
+            {
+                // i.e.: "           234,567      context-switches          #    1.900 K/sec"
+                String[] tokens = line.trim().split("\\s+");
+                if (tokens.length < 2 || !tokens[1].equals(event))
+                    continue;
+                // The thousands separator depends on the locale.
+                String digits = tokens[0].replaceAll("[^0-9]", "");
+                if (!digits.isEmpty())
+                    total = Math.max(total, 0L) + Long.parseLong(digits);
+            }
+        }
+        return total;
+    }
+
+    /**
+     * @return the samples written by {@link org.eclipse.jetty.perf.util.ServerResourceRecorder} on the single node of the node array,
+     * each sample holding the values of the CSV columns in order
+     */
+    public static List<long[]> loadServerResourceSamples(Path reportRootPath, NodeArrayConfiguration nodeArray) throws IOException
+    {
+        Node node = nodeArray.nodes().iterator().next();
+        Path csv = reportRootPath.resolve(nodeArray.id()).resolve(node.getId()).resolve("server-resources.csv");
+        List<long[]> samples = new ArrayList<>();
+        List<String> lines = Files.readAllLines(csv, StandardCharsets.UTF_8);
+        // Skip the header.
+        for (String line : lines.subList(1, lines.size()))
+        {
+            samples.add(Arrays.stream(line.split(",")).mapToLong(Long::parseLong).toArray());
+        }
+        if (samples.isEmpty())
+            throw new IOException("No server resource sample in " + csv);
+        return samples;
+    }
+
+    /**
+     * @return the counts of all the non-200 statuses and failures of all nodes of the node array
+     */
+    public static List<Map.Entry<Long, String>> loadHttpClientErrors(Path reportRootPath, NodeArrayConfiguration nodeArray) throws IOException
+    {
+        List<Map.Entry<Long, String>> counters = new ArrayList<>();
         for (Node node : nodeArray.nodes())
         {
-            Path perfHlog = reportRootPath.resolve(nodeArray.id()).resolve(node.getId()).resolve("perf.hlog");
-            try (HistogramLogReader histogramLogReader = new HistogramLogReader(perfHlog.toFile()))
+            Path statusesLog = reportRootPath.resolve(nodeArray.id()).resolve(node.getId()).resolve("http-client-statuses.log");
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(statusesLog.toFile()), StandardCharsets.UTF_8)))
             {
                 while (true)
                 {
-                    AbstractHistogram histogram = (AbstractHistogram)histogramLogReader.nextIntervalHistogram();
-                    if (histogram == null)
+                    String line = reader.readLine();
+                    if (line == null)
                         break;
 
-                    sum += histogram.getValueAtPercentile(99.0);
-                    count++;
+                    int idx = line.indexOf('=');
+                    if (idx == -1)
+                        continue;
+
+                    long count = Long.parseLong(line.substring(0, idx));
+                    String status = line.substring(idx + 1);
+
+                    if (!"200".equals(status))
+                        counters.add(new AbstractMap.SimpleImmutableEntry<>(count, status));
                 }
             }
         }
+        return counters;
+    }
+
+    public static ThroughputTimeline loadThroughputTimeline(Path reportRootPath, NodeArrayConfiguration nodeArray) throws IOException
+    {
+        return ThroughputTimeline.sum(loadSummaries(reportRootPath, nodeArray, "perf.hlog").stream().map(HlogSummary::getThroughputTimeline).toList());
+    }
+
+    /**
+     * Decode the given histogram log of all nodes of the node array, in parallel.
+     */
+    public static List<HlogSummary> loadSummaries(Path reportRootPath, NodeArrayConfiguration nodeArray, String hlogFilename) throws IOException
+    {
+        List<Path> hlogFiles = new ArrayList<>();
+        for (Node node : nodeArray.nodes())
+        {
+            hlogFiles.add(reportRootPath.resolve(nodeArray.id()).resolve(node.getId()).resolve(hlogFilename));
+        }
+        return HlogSummary.of(hlogFiles);
+    }
+
+    public static boolean assertP99Latency(Path reportRootPath, NodeArrayConfiguration nodeArray, long expectedValue, double errorMargin, int toleratedOutliers) throws IOException
+    {
+        return assertP99Latency(reportRootPath, nodeArray, "perf.hlog", expectedValue, errorMargin, toleratedOutliers);
+    }
+
+    /**
+     * @param hlogFilename the histogram log to assert on, e.g.: {@code perf.hlog} for the response times or
+     * {@code perf-corrected.hlog} for the loaders' and probe's response times measured from the intended send time
+     */
+    public static boolean assertP99Latency(Path reportRootPath, NodeArrayConfiguration nodeArray, String hlogFilename, long expectedValue, double errorMargin, int toleratedOutliers) throws IOException
+    {
+        List<HlogSummary> summaries = loadSummaries(reportRootPath, nodeArray, hlogFilename);
+
+        // calculate mean p99 value as a basis to eliminate outliers
+        long sum = 0L;
+        long count = 0L;
+        for (HlogSummary summary : summaries)
+        {
+            for (int i = 0; i < summary.size(); i++)
+            {
+                sum += summary.getP99(i);
+                count++;
+            }
+        }
         long mean = sum / count;
 
         long trueIntegral = 0L;
         long correctedIntegral = 0L;
         int outliers = 0;
-        for (Node node : nodeArray.nodes())
+        for (HlogSummary summary : summaries)
         {
-            Path perfHlog = reportRootPath.resolve(nodeArray.id()).resolve(node.getId()).resolve("perf.hlog");
-            try (HistogramLogReader histogramLogReader = new HistogramLogReader(perfHlog.toFile()))
+            for (int i = 0; i < summary.size(); i++)
             {
-                while (true)
-                {
-                    AbstractHistogram histogram = (AbstractHistogram)histogramLogReader.nextIntervalHistogram();
-                    if (histogram == null)
-                        break;
+                long valueAtPercentile = summary.getP99(i);
+                trueIntegral += valueAtPercentile;
 
-                    long valueAtPercentile = histogram.getValueAtPercentile(99.0);
-                    trueIntegral += valueAtPercentile;
-
-                    // replace outliers (values over mean * 2) with mean
-                    if (valueAtPercentile <= mean * 2)
-                    {
-                        correctedIntegral += valueAtPercentile;
-                    }
-                    else
-                    {
-                        outliers++;
-                        correctedIntegral += mean;
-                    }
+                // replace outliers (values over mean * 2) with mean
+                if (valueAtPercentile <= mean * 2)
+                {
+                    correctedIntegral += valueAtPercentile;
+                }
+                else
+                {
+                    outliers++;
+                    correctedIntegral += mean;
                 }
             }
         }
         trueIntegral /= 1_000; // convert ns -> us
         correctedIntegral /= 1_000; // convert ns -> us
 
-        System.out.println("  " + nodeArray.id() + " P99 lat integral is " + trueIntegral + " vs expected " + expectedValue +
+        System.out.println("  " + nodeArray.id() + " " + hlogFilename + " P99 lat integral is " + trueIntegral + " vs expected " + expectedValue +
             " with " + outliers + " outlier(s), max = " + toleratedOutliers + ", corrected to " + correctedIntegral);
         double error = expectedValue * errorMargin / 100.0;
         double highBound = expectedValue + error;
@@ -1,6 +1,11 @@
 package org.eclipse.jetty.perf.handler;
 
+import java.nio.ByteBuffer;
+
+import org.eclipse.jetty.http.MetaData;
+import org.eclipse.jetty.perf.monitoring.jfr.SlowRequestEvent;
 import org.eclipse.jetty.perf.util.LatencyRecorder;
+import org.eclipse.jetty.server.ConnectionMetaData;
 import org.eclipse.jetty.server.Handler;
 import org.eclipse.jetty.server.HttpStream;
 import org.eclipse.jetty.server.Request;
@@ -13,32 +18,180 @@ import org.eclipse.jetty.util.Callback;
 public class ModernLatencyRecordingHandler extends Handler.Wrapper
 {
     private final LatencyRecorder recorder;
+    private final LatencyRecorder parseRecorder;
+    private final LatencyRecorder dispatchRecorder;
+    private final LatencyRecorder writeRecorder;
 
     public ModernLatencyRecordingHandler(Handler handler, LatencyRecorder recorder)
+    {
+        this(handler, recorder, null, null, null);
+    }
+
+    /**
+     * Multi-stage mode: on top of the total time, the time spent in each phase of the request is recorded.
+     * @param recorder records the total time, from the beginning of the request until the stream succeeded
+     * @param parseRecorder records the time from the beginning of the request until this handler is entered
+     * @param dispatchRecorder records the time from this handler being entered until the first response write
+     * @param writeRecorder records the time from the first response write until the stream succeeded
+     */
+    public ModernLatencyRecordingHandler(Handler handler, LatencyRecorder recorder, LatencyRecorder parseRecorder, LatencyRecorder dispatchRecorder, LatencyRecorder writeRecorder)
     {
         super(handler);
         this.recorder = recorder;
+        this.parseRecorder = parseRecorder;
+        this.dispatchRecorder = dispatchRecorder;
+        this.writeRecorder = writeRecorder;
     }
 
     @Override
     public boolean handle(Request request, Response response, Callback callback) throws Exception
     {
-        request.addHttpStreamWrapper(httpStream -> new HttpStream.Wrapper(httpStream)
+        if (SlowRequestEvent.isEventEnabled())
+            request.addHttpStreamWrapper(httpStream -> new SlowRequestHttpStream(httpStream, request));
+
+        if (parseRecorder == null)
         {
-            @Override
-            public void succeeded()
+            request.addHttpStreamWrapper(httpStream -> new HttpStream.Wrapper(httpStream)
             {
-                super.succeeded();
-                recorder.recordValue(System.nanoTime() - request.getBeginNanoTime());
-            }
+                @Override
+                public void succeeded()
+                {
+                    super.succeeded();
+                    recorder.recordValue(System.nanoTime() - request.getBeginNanoTime());
+                }
+
+                @Override
+                public void failed(Throwable x)
+                {
+                    super.failed(x);
+                    recorder.recordValue(System.nanoTime() - request.getBeginNanoTime());
+                }
+            });
+        }
+        else
+        {
+            long handleNanoTime = System.nanoTime();
+            parseRecorder.recordValue(handleNanoTime - request.getBeginNanoTime());
+            request.addHttpStreamWrapper(httpStream -> new PhaseRecordingHttpStream(httpStream, request.getBeginNanoTime(), handleNanoTime));
+        }
+        return super.handle(request, response, callback);
+    }
 
-            @Override
-            public void failed(Throwable x)
+    private class PhaseRecordingHttpStream extends HttpStream.Wrapper
+    {
+        private final long beginNanoTime;
+        private final long handleNanoTime;
+        // Only written by the first send, which happens-before the stream completion.
+        private long firstSendNanoTime;
+
+        private PhaseRecordingHttpStream(HttpStream wrapped, long beginNanoTime, long handleNanoTime)
+        {
+            super(wrapped);
+            this.beginNanoTime = beginNanoTime;
+            this.handleNanoTime = handleNanoTime;
+        }
+
+        @Override
+        public void send(MetaData.Request request, MetaData.Response response, boolean last, ByteBuffer content, Callback callback)
+        {
+            if (firstSendNanoTime == 0L)
             {
-                super.failed(x);
-                recorder.recordValue(System.nanoTime() - request.getBeginNanoTime());
+                long now = System.nanoTime();
+                firstSendNanoTime = now;
+                dispatchRecorder.recordValue(now - handleNanoTime);
             }
-        });
-        return super.handle(request, response, callback);
+            super.send(request, response, last, content, callback);
+        }
+
+        @Override
+        public void succeeded()
+        {
+            super.succeeded();
+            record();
+        }
+
+        @Override
+        public void failed(Throwable x)
+        {
+            super.failed(x);
+            record();
+        }
+
+        private void record()
+        {
+            long now = System.nanoTime();
+            if (firstSendNanoTime != 0L)
+                writeRecorder.recordValue(now - firstSendNanoTime);
+            recorder.recordValue(now - beginNanoTime);
+        }
+    }
+
+    /**
+     * Emits a {@link SlowRequestEvent} spanning from this handler being entered until the stream completed;
+     * the details of the request are only captured for the events that are committed, just before the stream
+     * completes as the request cannot be used once completed.
+     */
+    private static class SlowRequestHttpStream extends HttpStream.Wrapper
+    {
+        private final SlowRequestEvent event = new SlowRequestEvent();
+        private final Request request;
+        private final long beginNanoTime;
+
+        private SlowRequestHttpStream(HttpStream wrapped, Request request)
+        {
+            super(wrapped);
+            this.request = request;
+            this.beginNanoTime = request.getBeginNanoTime();
+            event.begin();
+            event.handlingThread = Thread.currentThread();
+        }
+
+        @Override
+        public void send(MetaData.Request request, MetaData.Response response, boolean last, ByteBuffer content, Callback callback)
+        {
+            if (response != null)
+                event.status = response.getStatus();
+            super.send(request, response, last, content, callback);
+        }
+
+        @Override
+        public void succeeded()
+        {
+            boolean commit = end();
+            super.succeeded();
+            if (commit)
+                commit(null);
+        }
+
+        @Override
+        public void failed(Throwable x)
+        {
+            boolean commit = end();
+            super.failed(x);
+            if (commit)
+                commit(x);
+        }
+
+        private boolean end()
+        {
+            event.end();
+            if (!event.shouldCommit())
+                return false;
+            ConnectionMetaData connectionMetaData = request.getConnectionMetaData();
+            event.method = request.getMethod();
+            event.uri = request.getHttpURI().getPathQuery();
+            event.protocol = connectionMetaData.getProtocol();
+            event.connection = connectionMetaData.getId();
+            event.remoteAddress = String.valueOf(connectionMetaData.getRemoteSocketAddress());
+            event.stream = request.getId();
+            return true;
+        }
+
+        private void commit(Throwable failure)
+        {
+            event.latency = System.nanoTime() - beginNanoTime;
+            event.failure = failure == null ? null : failure.toString();
+            event.commit();
+        }
     }
 }
@@ -0,0 +1,84 @@
+package org.eclipse.jetty.perf.handler;
+
+import java.nio.ByteBuffer;
+
+import org.eclipse.jetty.http.MetaData;
+import org.eclipse.jetty.perf.util.PartitionedLatencyRecorder;
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.HttpStream;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Response;
+import org.eclipse.jetty.util.Callback;
+
+/**
+ * Records the latency per route, the route being the first segment of the request path,
+ * and per response status class, failed requests being recorded apart.
+ */
+public class PartitionedLatencyRecordingHandler extends Handler.Wrapper
+{
+    private final PartitionedLatencyRecorder recorder;
+
+    public PartitionedLatencyRecordingHandler(Handler handler, PartitionedLatencyRecorder recorder)
+    {
+        super(handler);
+        this.recorder = recorder;
+    }
+
+    @Override
+    public boolean handle(Request request, Response response, Callback callback) throws Exception
+    {
+        String route = route(Request.getPathInContext(request));
+        long beginNanoTime = request.getBeginNanoTime();
+        request.addHttpStreamWrapper(httpStream -> new PartitionedHttpStream(httpStream, route, beginNanoTime));
+        return super.handle(request, response, callback);
+    }
+
+    /**
+     * Captures the status when the response is committed, as the response cannot be used once the stream completed.
+     */
+    private class PartitionedHttpStream extends HttpStream.Wrapper
+    {
+        private final String route;
+        private final long beginNanoTime;
+        // Only written by the send of the response headers, which happens-before the stream completion.
+        private int status;
+
+        private PartitionedHttpStream(HttpStream wrapped, String route, long beginNanoTime)
+        {
+            super(wrapped);
+            this.route = route;
+            this.beginNanoTime = beginNanoTime;
+        }
+
+        @Override
+        public void send(MetaData.Request request, MetaData.Response response, boolean last, ByteBuffer content, Callback callback)
+        {
+            if (response != null)
+                status = response.getStatus();
+            super.send(request, response, last, content, callback);
+        }
+
+        @Override
+        public void succeeded()
+        {
+            super.succeeded();
+            recorder.recordValue(route, status, System.nanoTime() - beginNanoTime);
+        }
+
+        @Override
+        public void failed(Throwable x)
+        {
+            super.failed(x);
+            recorder.recordFailure(route, System.nanoTime() - beginNanoTime);
+        }
+    }
+
+    private static String route(String path)
+    {
+        if (path == null || path.isEmpty())
+            return "/";
+        int idx = path.indexOf('/', 1);
+        // Only allocate a substring when the path has more than one segment.
+        return idx == -1 ? path : path.substring(0, idx);
+    }
+}
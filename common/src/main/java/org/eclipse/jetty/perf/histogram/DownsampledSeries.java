@@ -0,0 +1,117 @@
+package org.eclipse.jetty.perf.histogram;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.function.IntToLongFunction;
+
+/**
+ * Percentile and throughput series of a histogram log, downsampled to a bounded number of time buckets,
+ * meant to be embedded as JSON in the HTML reports instead of the raw log.
+ * Each bucket reports the worst value of the intervals it groups for each percentile, the mean
+ * per-second request count for the throughput, and values are converted from ns to us.
+ * When a {@link GcTimeline} is given, each bucket also reports the total duration in ms of the GC pauses
+ * and concurrent cycles that started within it.
+ */
+public class DownsampledSeries
+{
+    public static final int DEFAULT_MAX_BUCKETS = 720;
+
+    private final HlogSummary summary;
+    private final GcTimeline gcTimeline;
+    private final int bucketSize;
+
+    public DownsampledSeries(HlogSummary summary)
+    {
+        this(summary, null);
+    }
+
+    public DownsampledSeries(HlogSummary summary, GcTimeline gcTimeline)
+    {
+        this(summary, gcTimeline, DEFAULT_MAX_BUCKETS);
+    }
+
+    public DownsampledSeries(HlogSummary summary, GcTimeline gcTimeline, int maxBuckets)
+    {
+        this.summary = summary;
+        this.gcTimeline = gcTimeline;
+        this.bucketSize = Math.max(1, (summary.size() + maxBuckets - 1) / maxBuckets);
+    }
+
+    public void writeJson(Writer writer) throws IOException
+    {
+        int size = summary.size();
+        long p99Integral = 0L;
+        long maxIntegral = 0L;
+        for (int i = 0; i < size; i++)
+        {
+            // divide values by 1000 b/c histogram contains ns and the report is in us
+            p99Integral += summary.getP99(i) / 1000;
+            maxIntegral += summary.getMax(i) / 1000;
+        }
+
+        writer.write("{\"bucketSeconds\":");
+        writer.write(Integer.toString(bucketSize));
+        writer.write(",\"totalCount\":");
+        writer.write(Long.toString(summary.getTotalCount()));
+        writer.write(",\"p99Integral\":");
+        writer.write(Long.toString(p99Integral));
+        writer.write(",\"maxIntegral\":");
+        writer.write(Long.toString(maxIntegral));
+        writeSeries(writer, "timestamps", (from, to) -> summary.getStartTimestamp(from));
+        writeSeries(writer, "tps", (from, to) -> sum(from, to, summary::getCount) / (to - from));
+        writeSeries(writer, "p50", (from, to) -> worst(from, to, summary::getP50) / 1000);
+        writeSeries(writer, "p90", (from, to) -> worst(from, to, summary::getP90) / 1000);
+        writeSeries(writer, "p99", (from, to) -> worst(from, to, summary::getP99) / 1000);
+        writeSeries(writer, "p999", (from, to) -> worst(from, to, summary::getP999) / 1000);
+        writeSeries(writer, "max", (from, to) -> worst(from, to, summary::getMax) / 1000);
+        if (gcTimeline != null)
+        {
+            // Intervals are 1s long, so a bucket ends 1s after the start of its last interval.
+            writeSeries(writer, "gcPauses", (from, to) -> gcTimeline.getPauseMillis(summary.getStartTimestamp(from), summary.getStartTimestamp(to - 1) + 1000L));
+            writeSeries(writer, "gcCycles", (from, to) -> gcTimeline.getCycleMillis(summary.getStartTimestamp(from), summary.getStartTimestamp(to - 1) + 1000L));
+        }
+        writer.write("}");
+    }
+
+    private void writeSeries(Writer writer, String name, Bucket bucket) throws IOException
+    {
+        writer.write(",\"");
+        writer.write(name);
+        writer.write("\":[");
+        int size = summary.size();
+        for (int from = 0; from < size; from += bucketSize)
+        {
+            if (from > 0)
+                writer.write(',');
+            int to = Math.min(size, from + bucketSize);
+            writer.write(Long.toString(bucket.value(from, to)));
+        }
+        writer.write("]");
+    }
+
+    private static long sum(int from, int to, IntToLongFunction values)
+    {
+        long sum = 0L;
+        for (int i = from; i < to; i++)
+        {
+            sum += values.applyAsLong(i);
+        }
+        return sum;
+    }
+
+    private static long worst(int from, int to, IntToLongFunction values)
+    {
+        long max = 0L;
+        for (int i = from; i < to; i++)
+        {
+            max = Math.max(max, values.applyAsLong(i));
+        }
+        return max;
+    }
+
+    @FunctionalInterface
+    private interface Bucket
+    {
+        long value(int from, int to);
+    }
+}
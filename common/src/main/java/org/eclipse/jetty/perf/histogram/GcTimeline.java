@@ -0,0 +1,66 @@
+package org.eclipse.jetty.perf.histogram;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * The GC events written by {@link org.eclipse.jetty.perf.monitoring.gc.GcMonitor}, to be overlaid on the latency charts.
+ */
+public class GcTimeline
+{
+    private final long[] startTimestamps;
+    private final long[] durations;
+    private final boolean[] pauses;
+
+    private GcTimeline(List<String> lines)
+    {
+        int size = lines.size();
+        startTimestamps = new long[size];
+        durations = new long[size];
+        pauses = new boolean[size];
+        for (int i = 0; i < size; i++)
+        {
+            // start_ms,duration_ms,kind,...
+            String[] values = lines.get(i).split(",");
+            startTimestamps[i] = Long.parseLong(values[0]);
+            durations[i] = Long.parseLong(values[1]);
+            pauses[i] = values[2].equals("pause");
+        }
+    }
+
+    public static GcTimeline of(Path eventsFile) throws IOException
+    {
+        List<String> lines = Files.readAllLines(eventsFile, StandardCharsets.UTF_8);
+        return new GcTimeline(lines.isEmpty() ? lines : lines.subList(1, lines.size()));
+    }
+
+    /**
+     * @return the total duration in millis of the GC pauses that started between the given epoch timestamps in millis
+     */
+    public long getPauseMillis(long fromTimestamp, long toTimestamp)
+    {
+        return sum(fromTimestamp, toTimestamp, true);
+    }
+
+    /**
+     * @return the total duration in millis of the concurrent GC cycles that started between the given epoch timestamps in millis
+     */
+    public long getCycleMillis(long fromTimestamp, long toTimestamp)
+    {
+        return sum(fromTimestamp, toTimestamp, false);
+    }
+
+    private long sum(long fromTimestamp, long toTimestamp, boolean pause)
+    {
+        long sum = 0L;
+        for (int i = 0; i < startTimestamps.length; i++)
+        {
+            if (pauses[i] == pause && startTimestamps[i] >= fromTimestamp && startTimestamps[i] < toTimestamp)
+                sum += durations[i];
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,226 @@
+package org.eclipse.jetty.perf.histogram;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogReader;
+
+/**
+ * The result of decoding a histogram log once: the per-interval counts and percentiles,
+ * and the histogram of all intervals merged together.
+ * The most recently used summaries are cached per file as long as the file is not modified, so that the assertions
+ * and the report generators of a run all share the result of a single decoding pass; the cache is bounded
+ * as the sweeps read the logs of many runs in the same JVM.
+ */
+public class HlogSummary
+{
+    private static final int CACHE_SIZE = 64;
+    // Access order, so that the least recently used summary is evicted first.
+    private static final Map<Path, HlogSummary> CACHE = new LinkedHashMap<>(16, 0.75F, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Path, HlogSummary> eldest)
+        {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    private final long fileSize;
+    private final long fileLastModified;
+    private final int size;
+    private final long[] startTimestamps;
+    private final long[] counts;
+    private final long[] p50s;
+    private final long[] p90s;
+    private final long[] p99s;
+    private final long[] p999s;
+    private final long[] maxs;
+    private final Histogram total;
+
+    private HlogSummary(Path hlogFile) throws IOException
+    {
+        this.fileSize = Files.size(hlogFile);
+        this.fileLastModified = Files.getLastModifiedTime(hlogFile).toMillis();
+
+        int capacity = 64;
+        long[] startTimestamps = new long[capacity];
+        long[] counts = new long[capacity];
+        long[] p50s = new long[capacity];
+        long[] p90s = new long[capacity];
+        long[] p99s = new long[capacity];
+        long[] p999s = new long[capacity];
+        long[] maxs = new long[capacity];
+        Histogram total = new Histogram(3);
+        int size = 0;
+        try (HistogramLogReader reader = new HistogramLogReader(hlogFile.toFile()))
+        {
+            while (true)
+            {
+                Histogram histogram = (Histogram)reader.nextIntervalHistogram();
+                if (histogram == null)
+                    break;
+
+                if (size == capacity)
+                {
+                    capacity *= 2;
+                    startTimestamps = Arrays.copyOf(startTimestamps, capacity);
+                    counts = Arrays.copyOf(counts, capacity);
+                    p50s = Arrays.copyOf(p50s, capacity);
+                    p90s = Arrays.copyOf(p90s, capacity);
+                    p99s = Arrays.copyOf(p99s, capacity);
+                    p999s = Arrays.copyOf(p999s, capacity);
+                    maxs = Arrays.copyOf(maxs, capacity);
+                }
+                startTimestamps[size] = histogram.getStartTimeStamp();
+                counts[size] = histogram.getTotalCount();
+                p50s[size] = histogram.getValueAtPercentile(50.0);
+                p90s[size] = histogram.getValueAtPercentile(90.0);
+                p99s[size] = histogram.getValueAtPercentile(99.0);
+                p999s[size] = histogram.getValueAtPercentile(99.9);
+                maxs[size] = histogram.getMaxValue();
+                total.add(histogram);
+                size++;
+            }
+        }
+        this.size = size;
+        this.startTimestamps = Arrays.copyOf(startTimestamps, size);
+        this.counts = Arrays.copyOf(counts, size);
+        this.p50s = Arrays.copyOf(p50s, size);
+        this.p90s = Arrays.copyOf(p90s, size);
+        this.p99s = Arrays.copyOf(p99s, size);
+        this.p999s = Arrays.copyOf(p999s, size);
+        this.maxs = Arrays.copyOf(maxs, size);
+        this.total = total;
+    }
+
+    public static HlogSummary of(Path hlogFile) throws IOException
+    {
+        if (!Files.isReadable(hlogFile))
+            throw new FileNotFoundException(hlogFile.toString());
+        Path key = hlogFile.toAbsolutePath().normalize();
+        HlogSummary summary;
+        synchronized (CACHE)
+        {
+            summary = CACHE.get(key);
+        }
+        if (summary != null && summary.fileSize == Files.size(key) && summary.fileLastModified == Files.getLastModifiedTime(key).toMillis())
+            return summary;
+        // Decode outside of the lock so that different files can be decoded concurrently.
+        summary = new HlogSummary(key);
+        synchronized (CACHE)
+        {
+            CACHE.put(key, summary);
+        }
+        return summary;
+    }
+
+    /**
+     * Decode the given histogram logs in parallel, on threads of its own rather than on the common fork-join pool.
+     */
+    public static List<HlogSummary> of(List<Path> hlogFiles) throws IOException
+    {
+        if (hlogFiles.size() <= 1)
+            return hlogFiles.isEmpty() ? List.of() : List.of(of(hlogFiles.get(0)));
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(hlogFiles.size(), Runtime.getRuntime().availableProcessors()));
+        try
+        {
+            List<Future<HlogSummary>> futures = new ArrayList<>();
+            for (Path hlogFile : hlogFiles)
+            {
+                futures.add(executor.submit(() -> of(hlogFile)));
+            }
+            List<HlogSummary> summaries = new ArrayList<>();
+            for (Future<HlogSummary> future : futures)
+            {
+                summaries.add(future.get());
+            }
+            return summaries;
+        }
+        catch (InterruptedException e)
+        {
+            throw new InterruptedIOException("Interrupted while decoding " + hlogFiles);
+        }
+        catch (ExecutionException e)
+        {
+            if (e.getCause() instanceof IOException)
+                throw (IOException)e.getCause();
+            throw new IOException("Error decoding " + hlogFiles, e.getCause());
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public long getStartTimestamp(int interval)
+    {
+        return startTimestamps[interval];
+    }
+
+    public long getCount(int interval)
+    {
+        return counts[interval];
+    }
+
+    public long getP50(int interval)
+    {
+        return p50s[interval];
+    }
+
+    public long getP90(int interval)
+    {
+        return p90s[interval];
+    }
+
+    public long getP99(int interval)
+    {
+        return p99s[interval];
+    }
+
+    public long getP999(int interval)
+    {
+        return p999s[interval];
+    }
+
+    public long getMax(int interval)
+    {
+        return maxs[interval];
+    }
+
+    public long getTotalCount()
+    {
+        return total.getTotalCount();
+    }
+
+    /**
+     * @return the histogram of all intervals merged together; must not be modified
+     */
+    public Histogram getTotalHistogram()
+    {
+        return total;
+    }
+
+    public ThroughputTimeline getThroughputTimeline()
+    {
+        return new ThroughputTimeline(counts);
+    }
+}
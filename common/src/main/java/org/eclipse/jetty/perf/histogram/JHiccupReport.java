@@ -1,24 +1,36 @@
 package org.eclipse.jetty.perf.histogram;
 
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.nio.charset.StandardCharsets;
 
 public class JHiccupReport
 {
+    private static final String DATA_PLACEHOLDER = "##DATA##";
+
     public static void createHtmlHistogram(File hlogFile, OutputStream out) throws IOException
     {
-        String html = loadAsString(JHiccupReport.class.getResourceAsStream(JHiccupReport.class.getSimpleName() + ".html"));
-        String histograms = loadAsString(new FileInputStream(hlogFile));
+        createHtmlHistogram(HlogSummary.of(hlogFile.toPath()), out);
+    }
 
-        html = html.replace("##HISTOGRAMS##", histograms);
+    public static void createHtmlHistogram(HlogSummary summary, OutputStream out) throws IOException
+    {
+        String html = loadAsString(JHiccupReport.class.getResourceAsStream(JHiccupReport.class.getSimpleName() + ".html"));
+        int idx = html.indexOf(DATA_PLACEHOLDER);
 
-        out.write(html.getBytes(StandardCharsets.UTF_8));
+        // Only embed the downsampled series instead of the whole log.
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        writer.write(html, 0, idx);
+        new DownsampledSeries(summary).writeJson(writer);
+        writer.write(html, idx + DATA_PLACEHOLDER.length(), html.length() - idx - DATA_PLACEHOLDER.length());
+        writer.flush();
     }
 
     private static String loadAsString(InputStream input) throws IOException
@@ -1,24 +1,44 @@
 package org.eclipse.jetty.perf.histogram;
 
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.nio.charset.StandardCharsets;
 
 public class PerfReport
 {
+    private static final String DATA_PLACEHOLDER = "##DATA##";
+
     public static void createHtmlHistogram(File hlogFile, OutputStream out) throws IOException
     {
-        String html = loadAsString(PerfReport.class.getResourceAsStream(PerfReport.class.getSimpleName() + ".html"));
-        String histograms = loadAsString(new FileInputStream(hlogFile));
+        createHtmlHistogram(HlogSummary.of(hlogFile.toPath()), out);
+    }
+
+    public static void createHtmlHistogram(HlogSummary summary, OutputStream out) throws IOException
+    {
+        createHtmlHistogram(summary, null, out);
+    }
 
-        html = html.replace("##HISTOGRAMS##", histograms);
+    /**
+     * @param gcTimeline the GC events to mark on the latency chart, or null
+     */
+    public static void createHtmlHistogram(HlogSummary summary, GcTimeline gcTimeline, OutputStream out) throws IOException
+    {
+        String html = loadAsString(PerfReport.class.getResourceAsStream(PerfReport.class.getSimpleName() + ".html"));
+        int idx = html.indexOf(DATA_PLACEHOLDER);
 
-        out.write(html.getBytes(StandardCharsets.UTF_8));
+        // Only embed the downsampled series instead of the whole log.
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        writer.write(html, 0, idx);
+        new DownsampledSeries(summary, gcTimeline).writeJson(writer);
+        writer.write(html, idx + DATA_PLACEHOLDER.length(), html.length() - idx - DATA_PLACEHOLDER.length());
+        writer.flush();
     }
 
     private static String loadAsString(InputStream input) throws IOException
@@ -0,0 +1,124 @@
+package org.eclipse.jetty.perf.histogram;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The number of requests of each 1-second interval of a histogram log,
+ * or of the sum of the logs of multiple nodes.
+ */
+public class ThroughputTimeline
+{
+    /**
+     * The ratio of the mean rate under which an interval is part of a dip, the same as in {@code PerfReport.html}.
+     */
+    public static final double DIP_RATIO = 0.9;
+
+    private final long[] counts;
+
+    public ThroughputTimeline(long[] counts)
+    {
+        this.counts = counts;
+    }
+
+    /**
+     * Sum the timelines of multiple nodes, interval by interval. The result is truncated to the shortest
+     * timeline so that a node recording one more interval than the others does not look like a dip.
+     */
+    public static ThroughputTimeline sum(List<ThroughputTimeline> timelines)
+    {
+        int size = timelines.stream().mapToInt(ThroughputTimeline::size).min().orElse(0);
+        long[] counts = new long[size];
+        for (ThroughputTimeline timeline : timelines)
+        {
+            for (int i = 0; i < size; i++)
+            {
+                counts[i] += timeline.counts[i];
+            }
+        }
+        return new ThroughputTimeline(counts);
+    }
+
+    public int size()
+    {
+        return counts.length;
+    }
+
+    public long getCount(int interval)
+    {
+        return counts[interval];
+    }
+
+    public long getTotalCount()
+    {
+        return Arrays.stream(counts).sum();
+    }
+
+    public long getMinRate()
+    {
+        return Arrays.stream(counts).min().orElse(0L);
+    }
+
+    public double getMeanRate()
+    {
+        return Arrays.stream(counts).average().orElse(0.0);
+    }
+
+    public double getStandardDeviation()
+    {
+        if (counts.length == 0)
+            return 0.0;
+        double mean = getMeanRate();
+        double sumOfSquares = 0.0;
+        for (long count : counts)
+        {
+            double diff = count - mean;
+            sumOfSquares += diff * diff;
+        }
+        return Math.sqrt(sumOfSquares / counts.length);
+    }
+
+    public double getCoefficientOfVariation()
+    {
+        double mean = getMeanRate();
+        return mean == 0.0 ? 0.0 : getStandardDeviation() / mean;
+    }
+
+    /**
+     * @return the longest number of consecutive intervals with a rate lower than {@link #DIP_RATIO} of the mean rate
+     */
+    public int getLongestDip()
+    {
+        double rate = getMeanRate() * DIP_RATIO;
+        int longest = 0;
+        int current = 0;
+        for (long count : counts)
+        {
+            if (count < rate)
+            {
+                current++;
+                longest = Math.max(longest, current);
+            }
+            else
+            {
+                current = 0;
+            }
+        }
+        return longest;
+    }
+
+    public void writeCsv(OutputStream out)
+    {
+        PrintStream ps = new PrintStream(out);
+        ps.println("interval,requests");
+        for (int i = 0; i < counts.length; i++)
+        {
+            ps.print(i);
+            ps.print(',');
+            ps.println(counts[i]);
+        }
+        ps.flush();
+    }
+}
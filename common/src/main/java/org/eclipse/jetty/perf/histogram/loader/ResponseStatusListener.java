@@ -4,42 +4,74 @@ import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.nio.charset.StandardCharsets;
-import java.util.Map;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.atomic.LongAdder;
 
+import org.eclipse.jetty.perf.loader.ClosedLoopLoadGenerator;
 import org.eclipse.jetty.perf.util.Recorder;
 import org.mortbay.jetty.load.generator.LoadGenerator;
 import org.mortbay.jetty.load.generator.Resource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-public class ResponseStatusListener implements Resource.NodeListener, LoadGenerator.CompleteListener, Recorder
+/**
+ * Counts the response statuses and the failures, and writes the counts of each interval to the status file.
+ * Statuses are counted in an array indexed by the status code so that counting a response does not allocate.
+ * Failures are counted per exception class and top frame, and the first failure of each fingerprint provides a sample
+ * stack trace written to a separate {@code -failures.log} file. Reading the top frame copies the stack trace of every failure,
+ * so failures are counted per exception class only when the top frame is not wanted.
+ * At most {@value #MAX_FAILURE_FINGERPRINTS} fingerprints with a top frame are tracked, the failures past that limit
+ * are counted per exception class only.
+ */
+public class ResponseStatusListener implements Resource.NodeListener, LoadGenerator.CompleteListener, ClosedLoopLoadGenerator.Listener, Recorder
 {
+    private static final Logger LOG = LoggerFactory.getLogger(ResponseStatusListener.class);
+    private static final int MAX_STATUS = 600;
+    private static final int MAX_FAILURE_FINGERPRINTS = 64;
+
     private final Timer timer = new Timer();
 
-    private final AtomicReference<ConcurrentMap<String, LongAdder>> statuses = new AtomicReference<>(new ConcurrentHashMap<>());
+    // index 0 counts the statuses outside of [1, MAX_STATUS)
+    private final LongAdder[] statuses = new LongAdder[MAX_STATUS];
+    // only accessed by the timer thread
+    private final long[] writtenStatuses = new long[MAX_STATUS];
+    // keyed by exception class, or by FailureKey when the top frame is wanted
+    private final ConcurrentMap<Object, FailureCounter> failures = new ConcurrentHashMap<>();
+    private final LongAdder errors = new LongAdder();
     private final PrintWriter printWriter;
+    private final String failuresFilename;
     private final boolean fullStackTrace;
     private int writeCounter;
-    private boolean record;
+    private volatile boolean record;
+    private boolean stopped;
 
     public ResponseStatusListener(String statusFilename) throws IOException
     {
         this(statusFilename, true);
     }
 
+    /**
+     * @param fullStackTrace true to add the top frame of each failure to its fingerprint
+     */
     public ResponseStatusListener(String statusFilename, boolean fullStackTrace) throws IOException
     {
         this.printWriter = new PrintWriter(statusFilename, StandardCharsets.UTF_8);
+        this.failuresFilename = (statusFilename.endsWith(".log") ? statusFilename.substring(0, statusFilename.length() - 4) : statusFilename) + "-failures.log";
         this.fullStackTrace = fullStackTrace;
+        for (int i = 0; i < statuses.length; i++)
+        {
+            statuses[i] = new LongAdder();
+        }
     }
 
     @Override
     public void startRecording()
     {
+        // Only count the errors of the recording window, not the ones of the warmup.
+        errors.reset();
         this.record = true;
         this.timer.schedule(new TimerTask()
         {
@@ -52,76 +84,128 @@ public class ResponseStatusListener implements Resource.NodeListener, LoadGenera
     }
 
     @Override
-    public void stopRecording()
+    public synchronized void stopRecording()
     {
+        if (stopped)
+            return;
+        stopped = true;
         record = false;
         timer.cancel();
         printWriter.close();
         writeCounter = 0;
+        writeFailureSamples();
+    }
+
+    /**
+     * @return the number of responses that were not a 200 or failed since the recording started
+     */
+    public long getErrorCount()
+    {
+        return errors.sum();
     }
 
     private void writeStatuses()
     {
-        ConcurrentMap<String, LongAdder> toWrite = statuses.getAndSet(new ConcurrentHashMap<>());
         printWriter.println("[" + (writeCounter++) + "]");
-        for (Map.Entry<String, LongAdder> entry : toWrite.entrySet())
+        for (int i = 0; i < statuses.length; i++)
         {
-            String key = entry.getKey();
-            String value = entry.getValue().toString();
-            printWriter.print(value);
+            long total = statuses[i].sum();
+            long count = total - writtenStatuses[i];
+            if (count == 0L)
+                continue;
+            writtenStatuses[i] = total;
+            printWriter.print(count);
             printWriter.print('=');
-            printWriter.println(key);
+            printWriter.println(i);
+        }
+        for (FailureCounter failureCounter : failures.values())
+        {
+            long total = failureCounter.count.sum();
+            long count = total - failureCounter.written;
+            if (count == 0L)
+                continue;
+            failureCounter.written = total;
+            printWriter.print(count);
+            printWriter.print('=');
+            printWriter.println(failureCounter.fingerprint);
         }
         printWriter.println();
         printWriter.flush();
     }
 
+    private void writeFailureSamples()
+    {
+        if (failures.isEmpty())
+            return;
+        try (PrintWriter pw = new PrintWriter(failuresFilename, StandardCharsets.UTF_8))
+        {
+            for (FailureCounter failureCounter : failures.values())
+            {
+                pw.print(failureCounter.count.sum());
+                pw.print('=');
+                pw.println(failureCounter.fingerprint);
+                pw.println(failureCounter.sampleStackTrace);
+            }
+        }
+        catch (IOException e)
+        {
+            LOG.warn("Error writing the failure samples to {}", failuresFilename, e);
+        }
+    }
+
     @Override
     public void onResourceNode(Resource.Info info)
+    {
+        countResponse(info.getStatus(), info.getFailure());
+    }
+
+    @Override
+    public void onResponse(long requestTime, long responseTime, int status, Throwable failure)
+    {
+        countResponse(status, failure);
+    }
+
+    private void countResponse(int status, Throwable failure)
     {
         if (!record)
             return;
 
-        String key;
-
-        Throwable failure = info.getFailure();
         if (failure != null)
         {
-            if (fullStackTrace)
-            {
-                StringWriter sw = new StringWriter();
-                try (PrintWriter pw = new PrintWriter(sw))
-                {
-                    failure.printStackTrace(pw);
-                }
-                key = sw.toString();
-            }
-            else
-            {
-                key = failure.getClass().getName();
-            }
+            errors.increment();
+            countFailure(failure);
         }
         else
         {
-            int status = info.getStatus();
-            key = Integer.toString(status);
+            if (status != 200)
+                errors.increment();
+            statuses[status > 0 && status < MAX_STATUS ? status : 0].increment();
         }
+    }
 
-        LongAdder longAdder = statuses.get().get(key);
-        if (longAdder == null)
+    private void countFailure(Throwable failure)
+    {
+        Class<?> type = failure.getClass();
+        StackTraceElement topFrame = null;
+        if (fullStackTrace)
         {
-            statuses.get().compute(key, (k, v) ->
-            {
-                if (v == null)
-                    v = new LongAdder();
-                v.increment();
-                return v;
-            });
+            StackTraceElement[] stackTrace = failure.getStackTrace();
+            if (stackTrace.length > 0)
+                topFrame = stackTrace[0];
         }
-        else
+        Object key = topFrame == null ? type : new FailureKey(type, topFrame);
+        FailureCounter failureCounter = failures.get(key);
+        if (failureCounter == null)
         {
-            longAdder.increment();
+            if (topFrame != null && failures.size() >= MAX_FAILURE_FINGERPRINTS)
+            {
+                key = type;
+                topFrame = null;
+            }
+            StackTraceElement sampleTopFrame = topFrame;
+            failureCounter = failures.computeIfAbsent(key, k -> new FailureCounter(failure, sampleTopFrame));
         }
+        failureCounter.count.increment();
     }
 
     @Override
@@ -129,4 +213,35 @@ public class ResponseStatusListener implements Resource.NodeListener, LoadGenera
     {
         stopRecording();
     }
+
+    @Override
+    public void onComplete()
+    {
+        stopRecording();
+    }
+
+    private record FailureKey(Class<?> type, StackTraceElement topFrame)
+    {
+    }
+
+    private static class FailureCounter
+    {
+        private final LongAdder count = new LongAdder();
+        private final String fingerprint;
+        private final String sampleStackTrace;
+        // only accessed by the timer thread
+        private long written;
+
+        private FailureCounter(Throwable sample, StackTraceElement topFrame)
+        {
+            String type = sample.getClass().getName();
+            this.fingerprint = topFrame == null ? type : type + " at " + topFrame;
+            StringWriter sw = new StringWriter();
+            try (PrintWriter pw = new PrintWriter(sw))
+            {
+                sample.printStackTrace(pw);
+            }
+            this.sampleStackTrace = sw.toString();
+        }
+    }
 }
@@ -1,29 +1,81 @@
 package org.eclipse.jetty.perf.histogram.loader;
 
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.client.Request;
+import org.eclipse.jetty.client.Response;
+import org.eclipse.jetty.client.Result;
+import org.eclipse.jetty.perf.loader.ClosedLoopLoadGenerator;
+import org.eclipse.jetty.perf.loader.RequestTimestamps;
 import org.eclipse.jetty.perf.util.LatencyRecorder;
 import org.eclipse.jetty.perf.util.Recorder;
 import org.mortbay.jetty.load.generator.LoadGenerator;
 import org.mortbay.jetty.load.generator.Resource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-public class ResponseTimeListener implements Resource.NodeListener, LoadGenerator.CompleteListener, Recorder
+/**
+ * Records the response times measured by the load generator, from the time the request began to be sent.
+ * It can also record the response times corrected for coordinated omission, measured from the intended send time
+ * of the requests, i.e.: the time the load generator queued them in the HTTP client on its rate schedule; this
+ * accounts for the time requests wait for a connection once the server cannot keep up, which the load generator omits.
+ */
+public class ResponseTimeListener implements Resource.NodeListener, LoadGenerator.CompleteListener, ClosedLoopLoadGenerator.Listener, Recorder
 {
+    private static final Logger LOG = LoggerFactory.getLogger(ResponseTimeListener.class);
+    // Well above the number of requests a loader can have queued or in flight.
+    private static final int MAX_TRACKED_REQUESTS = 1 << 16;
+
     private final LatencyRecorder recorder;
+    private final LatencyRecorder correctedRecorder;
+    private final RequestTimestamps intendedSendTimes;
+    private final IntendedSendTimeListener requestListener;
 
     public ResponseTimeListener(LatencyRecorder latencyRecorder)
+    {
+        this(latencyRecorder, null);
+    }
+
+    /**
+     * @param correctedLatencyRecorder the recorder of the response times measured from the intended send time,
+     * fed by the {@link #getRequestListener() request listener}
+     */
+    public ResponseTimeListener(LatencyRecorder latencyRecorder, LatencyRecorder correctedLatencyRecorder)
     {
         this.recorder = latencyRecorder;
+        this.correctedRecorder = correctedLatencyRecorder;
+        this.intendedSendTimes = correctedLatencyRecorder == null ? null : new RequestTimestamps(MAX_TRACKED_REQUESTS, TimeUnit.MINUTES.toNanos(1));
+        this.requestListener = correctedLatencyRecorder == null ? null : new IntendedSendTimeListener();
+    }
+
+    /**
+     * @return the listener that must be registered on the HTTP client before it sends to record the corrected response times,
+     * or null if they are not recorded
+     */
+    public Request.Listener getRequestListener()
+    {
+        return requestListener;
     }
 
     @Override
     public void startRecording()
     {
         recorder.startRecording();
+        if (correctedRecorder != null)
+            correctedRecorder.startRecording();
     }
 
     @Override
     public void stopRecording()
     {
         recorder.stopRecording();
+        if (correctedRecorder != null)
+        {
+            correctedRecorder.stopRecording();
+            long untracked = intendedSendTimes.getUntracked();
+            if (untracked > 0L)
+                LOG.warn("{} request(s) missing from the corrected response times, too many requests were in flight", untracked);
+        }
     }
 
     @Override
@@ -33,9 +85,58 @@ public class ResponseTimeListener implements Resource.NodeListener, LoadGenerato
         recorder.recordValue(responseTime);
     }
 
+    @Override
+    public void onResponse(long requestTime, long responseTime, int status, Throwable failure)
+    {
+        recorder.recordValue(responseTime - requestTime);
+    }
+
     @Override
     public void onComplete(LoadGenerator generator)
     {
        stopRecording();
     }
+
+    @Override
+    public void onComplete()
+    {
+        stopRecording();
+    }
+
+    private class IntendedSendTimeListener implements Request.Listener, Response.CompleteListener
+    {
+        @Override
+        public void onQueued(Request request)
+        {
+            // Notified from within send(), so by the load generator thread that keeps to the rate schedule.
+            intendedSendTimes.put(request, System.nanoTime());
+        }
+
+        @Override
+        public void onBegin(Request request)
+        {
+            // The response cannot arrive before the request is sent, so the complete listener cannot miss it.
+            request.onComplete(this);
+        }
+
+        @Override
+        public void onFailure(Request request, Throwable failure)
+        {
+            // The request may have failed while queued, and then never begins: the exchange ends now.
+            record(request);
+        }
+
+        @Override
+        public void onComplete(Result result)
+        {
+            record(result.getRequest());
+        }
+
+        private void record(Request request)
+        {
+            long intendedSendTime = intendedSendTimes.remove(request);
+            if (intendedSendTime != 0L)
+                correctedRecorder.recordValue(System.nanoTime() - intendedSendTime);
+        }
+    }
 }
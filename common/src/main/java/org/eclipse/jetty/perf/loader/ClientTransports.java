@@ -0,0 +1,50 @@
+package org.eclipse.jetty.perf.loader;
+
+import org.eclipse.jetty.client.DuplexConnectionPool;
+import org.eclipse.jetty.client.HttpClientTransport;
+import org.eclipse.jetty.client.transport.HttpClientTransportOverHTTP;
+import org.eclipse.jetty.http2.client.HTTP2Client;
+import org.eclipse.jetty.http2.client.transport.HttpClientTransportOverHTTP2;
+import org.eclipse.jetty.http3.client.HTTP3Client;
+import org.eclipse.jetty.http3.client.transport.HttpClientTransportOverHTTP3;
+import org.eclipse.jetty.io.ClientConnector;
+import org.eclipse.jetty.perf.test.PerfTestParams;
+import org.eclipse.jetty.quic.client.ClientQuicConfiguration;
+import org.eclipse.jetty.util.ssl.SslContextFactory;
+
+public class ClientTransports
+{
+    /**
+     * @return a transport speaking the given HTTP version over the given connector, trusting all certificates
+     */
+    public static HttpClientTransport newHttpClientTransport(PerfTestParams.HttpVersion version, ClientConnector clientConnector)
+    {
+        if (clientConnector.getSslContextFactory() == null)
+            clientConnector.setSslContextFactory(new SslContextFactory.Client(true));
+        return switch (version)
+        {
+            case HTTP11 -> new HttpClientTransportOverHTTP(clientConnector);
+            case HTTP2 -> new HttpClientTransportOverHTTP2(new HTTP2Client(clientConnector));
+            case HTTP3 ->
+            {
+                // QUIC does its own TLS, so it needs its own configuration; null means no PEM work directory is needed on the client.
+                ClientQuicConfiguration quicConfiguration = new ClientQuicConfiguration(clientConnector.getSslContextFactory(), null);
+                yield new HttpClientTransportOverHTTP3(new HTTP3Client(quicConfiguration, clientConnector));
+            }
+        };
+    }
+
+    /**
+     * Make the connections of the transport close once they served the given number of requests,
+     * so that every connection of the client goes through the same sequence of requests before being replaced.
+     */
+    public static void setMaxRequestsPerConnection(HttpClientTransport transport, int maxRequestsPerConnection)
+    {
+        transport.setConnectionPoolFactory(destination ->
+        {
+            DuplexConnectionPool connectionPool = new DuplexConnectionPool(destination, destination.getHttpClient().getMaxConnectionsPerDestination());
+            connectionPool.setMaxUsage(maxRequestsPerConnection);
+            return connectionPool;
+        });
+    }
+}
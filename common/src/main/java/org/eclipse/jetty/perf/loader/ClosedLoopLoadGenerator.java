@@ -0,0 +1,177 @@
+package org.eclipse.jetty.perf.loader;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jetty.client.BytesRequestContent;
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.HttpClientTransport;
+import org.eclipse.jetty.client.Request;
+import org.eclipse.jetty.io.ClientConnector;
+import org.eclipse.jetty.perf.test.PerfTestParams;
+import org.eclipse.jetty.util.ssl.SslContextFactory;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+
+/**
+ * A closed-loop load generator: a fixed number of users each send a request, wait for its
+ * response, then wait for a think time before sending the next one.
+ * Unlike {@link org.mortbay.jetty.load.generator.LoadGenerator} which sends at a fixed rate,
+ * the throughput is an outcome of the server's latency.
+ */
+public class ClosedLoopLoadGenerator
+{
+    public enum ThinkTime
+    {
+        NONE, CONSTANT, UNIFORM, EXPONENTIAL;
+
+        long nextNanos(long meanNanos)
+        {
+            if (meanNanos <= 0L)
+                return 0L;
+            return switch (this)
+            {
+                case NONE -> 0L;
+                case CONSTANT -> meanNanos;
+                case UNIFORM -> ThreadLocalRandom.current().nextLong(2 * meanNanos + 1);
+                case EXPONENTIAL -> (long)(-Math.log(1.0 - ThreadLocalRandom.current().nextDouble()) * meanNanos);
+            };
+        }
+    }
+
+    public interface Listener
+    {
+        /**
+         * @param requestTime the {@link System#nanoTime()} at which the request was sent
+         * @param responseTime the {@link System#nanoTime()} at which the response completed
+         * @param status the response status, or 0 if there was no response
+         * @param failure the failure, or null if the exchange succeeded
+         */
+        void onResponse(long requestTime, long responseTime, int status, Throwable failure);
+
+        default void onComplete()
+        {
+        }
+    }
+
+    private final URI uri;
+    private final ResourceMix resourceMix;
+    private final int concurrency;
+    private final ThinkTime thinkTime;
+    private final long meanThinkTimeNanos;
+    private final Duration runFor;
+    private final List<Listener> listeners;
+    private final HttpClient httpClient;
+    private final AtomicInteger activeUsers = new AtomicInteger();
+    private final CompletableFuture<Void> completion = new CompletableFuture<>();
+    private volatile boolean interrupted;
+    private long deadline;
+
+    public ClosedLoopLoadGenerator(URI uri, ResourceMix resourceMix, PerfTestParams.HttpVersion httpVersion, int concurrency, ThinkTime thinkTime, Duration meanThinkTime, Duration runFor, List<Listener> listeners)
+    {
+        this.uri = uri;
+        this.resourceMix = resourceMix;
+        this.concurrency = concurrency;
+        this.thinkTime = thinkTime;
+        this.meanThinkTimeNanos = meanThinkTime.toNanos();
+        this.runFor = runFor;
+        this.listeners = listeners;
+
+        ClientConnector clientConnector = new ClientConnector();
+        clientConnector.setSslContextFactory(new SslContextFactory.Client(true));
+        QueuedThreadPool executor = new QueuedThreadPool();
+        executor.setName("closed-loop-client");
+        clientConnector.setExecutor(executor);
+        HttpClientTransport transport = ClientTransports.newHttpClientTransport(httpVersion, clientConnector);
+        this.httpClient = new HttpClient(transport);
+        // One connection per user with HTTP/1.1, so that no request ever waits for a connection.
+        httpClient.setMaxConnectionsPerDestination(concurrency);
+        httpClient.setMaxRequestsQueuedPerDestination(concurrency);
+    }
+
+    public CompletableFuture<Void> begin() throws Exception
+    {
+        httpClient.start();
+        deadline = System.nanoTime() + runFor.toNanos();
+        activeUsers.set(concurrency);
+        for (int i = 0; i < concurrency; i++)
+        {
+            send();
+        }
+        return completion;
+    }
+
+    public HttpClientTransport getHttpClientTransport()
+    {
+        return httpClient.getTransport();
+    }
+
+    /**
+     * Must be called before {@link #begin()}, as the request listeners of the client cannot be changed while it sends.
+     */
+    public void addRequestListener(Request.Listener listener)
+    {
+        httpClient.getRequestListeners().addListener(listener);
+    }
+
+    public void interrupt()
+    {
+        interrupted = true;
+    }
+
+    private void send()
+    {
+        if (interrupted || System.nanoTime() - deadline >= 0L)
+        {
+            // The client cannot be stopped from one of its own threads.
+            if (activeUsers.decrementAndGet() == 0)
+                CompletableFuture.runAsync(this::complete);
+            return;
+        }
+
+        ResourceMix.Entry entry = resourceMix.next();
+        Request request = httpClient.newRequest(uri)
+            .method(entry.getMethod())
+            .path(entry.getPath());
+        if (!entry.getHeaders().isEmpty())
+            request.headers(headers -> entry.getHeaders().forEach(headers::put));
+        if (entry.getRequestBodySize() > 0)
+            request.body(new BytesRequestContent(entry.getBody()));
+
+        long requestTime = System.nanoTime();
+        request.send(result ->
+        {
+            long responseTime = System.nanoTime();
+            int status = result.getResponse() == null ? 0 : result.getResponse().getStatus();
+            Throwable failure = result.getFailure();
+            for (Listener listener : listeners)
+            {
+                listener.onResponse(requestTime, responseTime, status, failure);
+            }
+
+            long thinkNanos = thinkTime.nextNanos(meanThinkTimeNanos);
+            if (thinkNanos > 0L)
+                httpClient.getScheduler().schedule(this::send, thinkNanos, TimeUnit.NANOSECONDS);
+            else
+                httpClient.getExecutor().execute(this::send);
+        });
+    }
+
+    private void complete()
+    {
+        listeners.forEach(Listener::onComplete);
+        try
+        {
+            httpClient.stop();
+            completion.complete(null);
+        }
+        catch (Throwable x)
+        {
+            completion.completeExceptionally(x);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package org.eclipse.jetty.perf.loader;
+
+import org.eclipse.jetty.client.HttpClientTransport;
+import org.eclipse.jetty.io.ClientConnector;
+import org.eclipse.jetty.perf.test.PerfTestParams;
+import org.mortbay.jetty.load.generator.HTTPClientTransportBuilder;
+
+/**
+ * Makes the {@link org.mortbay.jetty.load.generator.LoadGenerator} use HTTP/3,
+ * which jetty-load-generator does not support out of the box.
+ */
+public class HTTP3ClientTransportBuilder implements HTTPClientTransportBuilder
+{
+    public static final String TYPE = "http/3";
+
+    private int selectors = 1;
+
+    public HTTP3ClientTransportBuilder selectors(int selectors)
+    {
+        this.selectors = selectors;
+        return this;
+    }
+
+    @Override
+    public String getType()
+    {
+        return TYPE;
+    }
+
+    @Override
+    public HttpClientTransport build()
+    {
+        ClientConnector clientConnector = new ClientConnector();
+        clientConnector.setSelectors(selectors);
+        return ClientTransports.newHttpClientTransport(PerfTestParams.HttpVersion.HTTP3, clientConnector);
+    }
+}
@@ -0,0 +1,190 @@
+package org.eclipse.jetty.perf.loader;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.jetty.client.AbstractConnectionPool;
+import org.eclipse.jetty.client.ConnectionPool;
+import org.eclipse.jetty.client.Destination;
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.HttpClientTransport;
+import org.eclipse.jetty.client.HttpDestination;
+import org.eclipse.jetty.client.Request;
+import org.eclipse.jetty.perf.util.LatencyRecorder;
+import org.eclipse.jetty.perf.util.Recorder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Samples the state of the destinations of the tracked HTTP clients every second and writes it to a CSV file:
+ * the connection pool size, the active, idle and pending connections and the number of queued requests.
+ * The time requests spend queued in the destination waiting for a connection is recorded into a {@link LatencyRecorder}
+ * by the {@link #getRequestListener() request listener}, which must be registered on the HTTP clients before they send.
+ * Every request is timed through a preallocated {@link RequestTimestamps} table so that timing does not allocate,
+ * which makes the {@code max_queue_wait_us} column the actual max queue wait of each second.
+ */
+public class HttpClientTelemetryRecorder implements Recorder
+{
+    private static final Logger LOG = LoggerFactory.getLogger(HttpClientTelemetryRecorder.class);
+    private static final int MAX_TRACKED_REQUESTS = 1 << 16;
+
+    private final Timer timer = new Timer();
+    private final List<HttpClientTransport> transports = new CopyOnWriteArrayList<>();
+    // The destination notifies that a request is queued after queuing it, so a request may begin before it is timed;
+    // its entry is then never removed, and is reclaimed once stale.
+    private final RequestTimestamps queuedTimes = new RequestTimestamps(MAX_TRACKED_REQUESTS, TimeUnit.SECONDS.toNanos(10));
+    private final Request.Listener requestListener = new QueueWaitListener();
+    private final PrintWriter printWriter;
+    private final LatencyRecorder queueWaitRecorder;
+    private final AtomicLong maxQueueWait = new AtomicLong();
+    private long second;
+    private volatile boolean record;
+
+    public HttpClientTelemetryRecorder(String csvFilename, LatencyRecorder queueWaitRecorder) throws IOException
+    {
+        this.printWriter = new PrintWriter(csvFilename, StandardCharsets.UTF_8);
+        this.queueWaitRecorder = queueWaitRecorder;
+    }
+
+    /**
+     * @return the listener that records the queue wait of the requests
+     */
+    public Request.Listener getRequestListener()
+    {
+        return requestListener;
+    }
+
+    /**
+     * Track the HTTP client the given transport belongs to; the client is only known once it was created with that transport.
+     */
+    public void track(HttpClientTransport transport)
+    {
+        transports.add(transport);
+    }
+
+    @Override
+    public synchronized void startRecording()
+    {
+        queueWaitRecorder.startRecording();
+        printWriter.println("second,clients,destinations,max_connections,connections,active,idle,pending,queued,max_queue_wait_us");
+        record = true;
+        timer.schedule(new TimerTask()
+        {
+            @Override
+            public void run()
+            {
+                sample();
+            }
+        }, 1000, 1000);
+    }
+
+    @Override
+    public synchronized void stopRecording()
+    {
+        if (!record)
+            return;
+        record = false;
+        timer.cancel();
+        printWriter.close();
+        queueWaitRecorder.stopRecording();
+        long untracked = queuedTimes.getUntracked();
+        if (untracked > 0L)
+            LOG.warn("{} request(s) missing from the queue wait times, too many requests were queued", untracked);
+    }
+
+    private synchronized void sample()
+    {
+        if (!record)
+            return;
+
+        int clients = 0;
+        int destinations = 0;
+        int maxConnections = 0;
+        int connections = 0;
+        int active = 0;
+        int idle = 0;
+        int pending = 0;
+        int queued = 0;
+        for (HttpClientTransport transport : transports)
+        {
+            HttpClient httpClient = transport.getHttpClient();
+            if (httpClient == null)
+                continue;
+            clients++;
+            for (Destination destination : httpClient.getDestinations())
+            {
+                destinations++;
+                if (!(destination instanceof HttpDestination httpDestination))
+                    continue;
+                queued += httpDestination.getQueuedRequestCount();
+                ConnectionPool connectionPool = httpDestination.getConnectionPool();
+                if (connectionPool instanceof AbstractConnectionPool pool)
+                {
+                    maxConnections += pool.getMaxConnectionCount();
+                    connections += pool.getConnectionCount();
+                    active += pool.getActiveConnectionCount();
+                    idle += pool.getIdleConnectionCount();
+                    pending += pool.getPendingConnectionCount();
+                }
+            }
+        }
+
+        printWriter.print(second++);
+        printWriter.print(',');
+        printWriter.print(clients);
+        printWriter.print(',');
+        printWriter.print(destinations);
+        printWriter.print(',');
+        printWriter.print(maxConnections);
+        printWriter.print(',');
+        printWriter.print(connections);
+        printWriter.print(',');
+        printWriter.print(active);
+        printWriter.print(',');
+        printWriter.print(idle);
+        printWriter.print(',');
+        printWriter.print(pending);
+        printWriter.print(',');
+        printWriter.print(queued);
+        printWriter.print(',');
+        printWriter.println(maxQueueWait.getAndSet(0L) / 1000L);
+        printWriter.flush();
+    }
+
+    private class QueueWaitListener implements Request.Listener
+    {
+        @Override
+        public void onQueued(Request request)
+        {
+            if (record)
+                queuedTimes.put(request, System.nanoTime());
+        }
+
+        @Override
+        public void onBegin(Request request)
+        {
+            long queuedTime = queuedTimes.remove(request);
+            if (queuedTime == 0L || !record)
+                return;
+            long wait = System.nanoTime() - queuedTime;
+            queueWaitRecorder.recordValue(wait);
+            // Only write when the max grows, so that the requests do not contend on it.
+            if (wait > maxQueueWait.get())
+                maxQueueWait.accumulateAndGet(wait, Math::max);
+        }
+
+        @Override
+        public void onFailure(Request request, Throwable failure)
+        {
+            // The request may have been failed while queued.
+            queuedTimes.remove(request);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package org.eclipse.jetty.perf.loader;
+
+import java.io.Closeable;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jetty.client.Connection;
+import org.eclipse.jetty.client.Destination;
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.HttpClientTransport;
+import org.eclipse.jetty.client.Request;
+import org.eclipse.jetty.io.ClientConnector;
+import org.eclipse.jetty.perf.test.PerfTestParams;
+import org.eclipse.jetty.util.Promise;
+import org.eclipse.jetty.util.ssl.SslContextFactory;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Opens a number of keep-alive connections to the server, sends a single request on each of them
+ * so that they are fully established (i.e.: TLS handshake done, HTTP/2 preface exchanged),
+ * then leaves them idle until closed.
+ * The connections are created outside of the client's connection pool, so they are never reused.
+ */
+public class IdleConnections implements Closeable
+{
+    private static final Logger LOG = LoggerFactory.getLogger(IdleConnections.class);
+    // Limit the number of connections being established at the same time to not overflow the server's accept queue.
+    private static final int MAX_PENDING_CONNECTIONS = 1_000;
+
+    private final URI uri;
+    private final int count;
+    private final HttpClient httpClient;
+    private final Queue<Connection> connections = new ConcurrentLinkedQueue<>();
+    private final LongAdder failures = new LongAdder();
+
+    public IdleConnections(URI uri, PerfTestParams.HttpVersion httpVersion, int count)
+    {
+        this.uri = uri;
+        this.count = count;
+
+        ClientConnector clientConnector = new ClientConnector();
+        clientConnector.setSslContextFactory(new SslContextFactory.Client(true));
+        QueuedThreadPool executor = new QueuedThreadPool();
+        executor.setName("idle-connections");
+        clientConnector.setExecutor(executor);
+        HttpClientTransport transport = ClientTransports.newHttpClientTransport(httpVersion, clientConnector);
+        this.httpClient = new HttpClient(transport);
+        // The connections must stay open for the whole run.
+        httpClient.setIdleTimeout(0);
+    }
+
+    /**
+     * @return the number of connections that were successfully opened
+     */
+    public int open(Duration timeout) throws Exception
+    {
+        httpClient.start();
+        long deadline = System.nanoTime() + timeout.toNanos();
+        Semaphore pending = new Semaphore(MAX_PENDING_CONNECTIONS);
+        CountDownLatch latch = new CountDownLatch(count);
+        for (int i = 0; i < count; i++)
+        {
+            if (!pending.tryAcquire(deadline - System.nanoTime(), TimeUnit.NANOSECONDS))
+                throw new IllegalStateException("Timed out after opening " + connections.size() + " of " + count + " idle connections");
+
+            Request request = httpClient.newRequest(uri);
+            Destination destination = httpClient.resolveDestination(request);
+            destination.newConnection(Promise.from(connection -> connection.send(request, result ->
+            {
+                if (result.isSucceeded())
+                {
+                    connections.add(connection);
+                }
+                else
+                {
+                    failures.increment();
+                    connection.close();
+                }
+                pending.release();
+                latch.countDown();
+            }), x ->
+            {
+                failures.increment();
+                pending.release();
+                latch.countDown();
+            }));
+        }
+        if (!latch.await(deadline - System.nanoTime(), TimeUnit.NANOSECONDS))
+            throw new IllegalStateException("Timed out after opening " + connections.size() + " of " + count + " idle connections");
+        LOG.info("opened {} idle connections, {} failed", connections.size(), failures.sum());
+        return connections.size();
+    }
+
+    @Override
+    public void close()
+    {
+        Connection connection;
+        while ((connection = connections.poll()) != null)
+        {
+            connection.close();
+        }
+        try
+        {
+            httpClient.stop();
+        }
+        catch (Exception e)
+        {
+            LOG.debug("Error stopping the idle connections client", e);
+        }
+    }
+}
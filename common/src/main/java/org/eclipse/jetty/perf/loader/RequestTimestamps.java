@@ -0,0 +1,92 @@
+package org.eclipse.jetty.perf.loader;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.eclipse.jetty.client.Request;
+
+/**
+ * A fixed-size, lock-free table of {@link System#nanoTime()} timestamps keyed by request identity, so that the time
+ * of an event of a request can be read back at a later event of the same request without allocating per request.
+ * A request that finds no free slot is not tracked, and is counted as such.
+ * The entries of the requests whose later event never comes are reclaimed once older than the stale timeout.
+ */
+public class RequestTimestamps
+{
+    private static final int MAX_PROBES = 32;
+
+    private final AtomicReferenceArray<Request> requests;
+    private final AtomicLongArray timestamps;
+    private final AtomicLong untracked = new AtomicLong();
+    private final int mask;
+    private final long staleNanos;
+
+    /**
+     * @param capacity the number of slots, rounded up to a power of 2; it should be well above the number of requests in flight
+     * @param staleNanos the age after which an entry can be reclaimed
+     */
+    public RequestTimestamps(int capacity, long staleNanos)
+    {
+        int size = Integer.highestOneBit(Math.max(capacity, MAX_PROBES) - 1) << 1;
+        this.requests = new AtomicReferenceArray<>(size);
+        this.timestamps = new AtomicLongArray(size);
+        this.mask = size - 1;
+        this.staleNanos = staleNanos;
+    }
+
+    /**
+     * @return true if the timestamp was stored, false if the table is full
+     */
+    public boolean put(Request request, long timestamp)
+    {
+        int start = System.identityHashCode(request);
+        for (int probe = 0; probe < MAX_PROBES; probe++)
+        {
+            int i = (start + probe) & mask;
+            Request existing = requests.get(i);
+            if (existing != null)
+            {
+                // A timestamp of 0 is a slot being claimed, which is never stale.
+                long existingTimestamp = timestamps.get(i);
+                if (existingTimestamp == 0L || timestamp - existingTimestamp < staleNanos || !requests.compareAndSet(i, existing, null))
+                    continue;
+                timestamps.compareAndSet(i, existingTimestamp, 0L);
+            }
+            if (requests.compareAndSet(i, null, request))
+            {
+                timestamps.set(i, timestamp);
+                return true;
+            }
+        }
+        untracked.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * @return the timestamp of the request, which is forgotten, or 0 if the request is not tracked
+     */
+    public long remove(Request request)
+    {
+        int start = System.identityHashCode(request);
+        for (int probe = 0; probe < MAX_PROBES; probe++)
+        {
+            int i = (start + probe) & mask;
+            if (requests.get(i) == request)
+            {
+                long timestamp = timestamps.getAndSet(i, 0L);
+                requests.compareAndSet(i, request, null);
+                return timestamp;
+            }
+        }
+        return 0L;
+    }
+
+    /**
+     * @return the number of requests that could not be tracked because the table was full
+     */
+    public long getUntracked()
+    {
+        return untracked.get();
+    }
+}
@@ -0,0 +1,232 @@
+package org.eclipse.jetty.perf.loader;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.mortbay.jetty.load.generator.Resource;
+
+/**
+ * A weighted mix of the requests sent by the loaders.
+ * Each entry describes a request by its method, path, request body size and headers,
+ * and is sent in proportion to its weight.
+ */
+public class ResourceMix implements Serializable
+{
+    private final List<Entry> entries = new ArrayList<>();
+
+    /**
+     * A mix made of a single GET of the given path.
+     */
+    public static ResourceMix of(String path)
+    {
+        return new ResourceMix().add(1, "GET", path, 0);
+    }
+
+    /**
+     * Parse a mix from its textual form: a comma-separated list of {@code weight:method:path:requestBodySize},
+     * optionally followed by {@code :name=value} headers, i.e.: {@code 9:GET:/:0,1:POST:/upload:4096:Content-Type=application/octet-stream}.
+     */
+    public static ResourceMix parse(String spec)
+    {
+        ResourceMix mix = new ResourceMix();
+        for (String item : spec.split(","))
+        {
+            String[] parts = item.trim().split(":");
+            if (parts.length < 4)
+                throw new IllegalArgumentException("Invalid resource mix entry, expected weight:method:path:requestBodySize[:name=value...] but got: " + item);
+            Map<String, String> headers = new LinkedHashMap<>();
+            for (int i = 4; i < parts.length; i++)
+            {
+                int idx = parts[i].indexOf('=');
+                if (idx == -1)
+                    throw new IllegalArgumentException("Invalid header in resource mix entry: " + parts[i]);
+                headers.put(parts[i].substring(0, idx), parts[i].substring(idx + 1));
+            }
+            mix.add(Integer.parseInt(parts[0]), parts[1], parts[2], Integer.parseInt(parts[3]), headers);
+        }
+        return mix;
+    }
+
+    public ResourceMix add(int weight, String method, String path, int requestBodySize)
+    {
+        return add(weight, method, path, requestBodySize, Map.of());
+    }
+
+    public ResourceMix add(int weight, String method, String path, int requestBodySize, Map<String, String> headers)
+    {
+        if (weight <= 0)
+            throw new IllegalArgumentException("Weight must be > 0: " + weight);
+        entries.add(new Entry(weight, method, path, requestBodySize, new LinkedHashMap<>(headers)));
+        return this;
+    }
+
+    public List<Entry> getEntries()
+    {
+        return Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * @return how many requests a single iteration of {@link #toResource()} sends
+     */
+    public int getRequestsPerIteration()
+    {
+        int gcd = gcd();
+        return entries.stream().mapToInt(entry -> entry.weight / gcd).sum();
+    }
+
+    /**
+     * @return the rate of iterations of {@link #toResource()} that sends the closest rate of requests to the given one
+     */
+    public int toResourceRate(int requestRate)
+    {
+        return Math.max(1, Math.round((float)requestRate / getRequestsPerIteration()));
+    }
+
+    /**
+     * @return the rate of requests actually sent when asking for the given one, as only whole iterations of the mix are sent
+     */
+    public int getEffectiveRate(int requestRate)
+    {
+        return toResourceRate(requestRate) * getRequestsPerIteration();
+    }
+
+    /**
+     * Turn the mix into a load generator resource tree: a group that contains each entry
+     * as many times as its weight, after the weights are reduced by their greatest common divisor.
+     * Sending the group once sends {@link #getRequestsPerIteration()} requests in the right proportions.
+     * The load generator sends all the requests of a group at once, so each tick of its rate is a burst
+     * of {@link #getRequestsPerIteration()} concurrent requests rather than requests spread over the tick.
+     */
+    public Resource toResource()
+    {
+        if (entries.size() == 1)
+            return entries.get(0).toResource();
+
+        int gcd = gcd();
+        List<Resource> resources = new ArrayList<>();
+        for (Entry entry : entries)
+        {
+            for (int i = 0; i < entry.weight / gcd; i++)
+            {
+                resources.add(entry.toResource());
+            }
+        }
+        return new Resource(resources.toArray(new Resource[0]));
+    }
+
+    /**
+     * @return an entry picked at random according to the weights
+     */
+    public Entry next()
+    {
+        if (entries.size() == 1)
+            return entries.get(0);
+        int total = entries.stream().mapToInt(entry -> entry.weight).sum();
+        int pick = ThreadLocalRandom.current().nextInt(total);
+        for (Entry entry : entries)
+        {
+            pick -= entry.weight;
+            if (pick < 0)
+                return entry;
+        }
+        throw new IllegalStateException();
+    }
+
+    private int gcd()
+    {
+        int gcd = 0;
+        for (Entry entry : entries)
+        {
+            int a = gcd;
+            int b = entry.weight;
+            while (b != 0)
+            {
+                int t = a % b;
+                a = b;
+                b = t;
+            }
+            gcd = a;
+        }
+        return Math.max(1, gcd);
+    }
+
+    @Override
+    public String toString()
+    {
+        return entries.toString();
+    }
+
+    public static class Entry implements Serializable
+    {
+        private final int weight;
+        private final String method;
+        private final String path;
+        private final int requestBodySize;
+        private final Map<String, String> headers;
+        private transient byte[] body;
+
+        private Entry(int weight, String method, String path, int requestBodySize, Map<String, String> headers)
+        {
+            this.weight = weight;
+            this.method = method;
+            this.path = path;
+            this.requestBodySize = requestBodySize;
+            this.headers = headers;
+        }
+
+        public int getWeight()
+        {
+            return weight;
+        }
+
+        public String getMethod()
+        {
+            return method;
+        }
+
+        public String getPath()
+        {
+            return path;
+        }
+
+        public int getRequestBodySize()
+        {
+            return requestBodySize;
+        }
+
+        public Map<String, String> getHeaders()
+        {
+            return headers;
+        }
+
+        /**
+         * @return the request body, shared by all the requests of this entry
+         */
+        public byte[] getBody()
+        {
+            if (body == null)
+                body = new byte[requestBodySize];
+            return body;
+        }
+
+        private Resource toResource()
+        {
+            Resource resource = new Resource(path).method(method);
+            if (requestBodySize > 0)
+                resource.requestLength(requestBodySize);
+            headers.forEach(resource::requestHeader);
+            return resource;
+        }
+
+        @Override
+        public String toString()
+        {
+            return weight + ":" + method + ":" + path + ":" + requestBodySize + (headers.isEmpty() ? "" : ":" + headers);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package org.eclipse.jetty.perf.loader;
+
+import java.util.function.Consumer;
+
+import org.eclipse.jetty.client.HttpClientTransport;
+import org.mortbay.jetty.load.generator.HTTPClientTransportBuilder;
+
+/**
+ * Hands over every transport built for the {@link org.mortbay.jetty.load.generator.LoadGenerator} to a consumer,
+ * as this is the only way to reach the HTTP clients the load generator creates internally.
+ */
+public class TrackingClientTransportBuilder implements HTTPClientTransportBuilder
+{
+    private final HTTPClientTransportBuilder delegate;
+    private final Consumer<HttpClientTransport> consumer;
+
+    public TrackingClientTransportBuilder(HTTPClientTransportBuilder delegate, Consumer<HttpClientTransport> consumer)
+    {
+        this.delegate = delegate;
+        this.consumer = consumer;
+    }
+
+    @Override
+    public String getType()
+    {
+        return delegate.getType();
+    }
+
+    @Override
+    public HttpClientTransport build()
+    {
+        HttpClientTransport transport = delegate.build();
+        consumer.accept(transport);
+        return transport;
+    }
+}
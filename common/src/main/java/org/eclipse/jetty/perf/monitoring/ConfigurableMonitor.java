@@ -3,33 +3,31 @@ package org.eclipse.jetty.perf.monitoring;
 import java.io.Closeable;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Objects;
 import java.util.Set;
-import java.util.stream.Collectors;
 
-import org.eclipse.jetty.perf.monitoring.asyncprof.AsyncProfilerAllocationMonitor;
-import org.eclipse.jetty.perf.monitoring.asyncprof.AsyncProfilerCacheMissesMonitor;
-import org.eclipse.jetty.perf.monitoring.asyncprof.AsyncProfilerCpuMonitor;
-import org.eclipse.jetty.perf.monitoring.asyncprof.AsyncProfilerLockMonitor;
+import org.eclipse.jetty.perf.monitoring.asyncprof.AsyncProfilerMonitor;
+import org.eclipse.jetty.perf.monitoring.gc.GcMonitor;
+import org.eclipse.jetty.perf.monitoring.jfr.JfrMonitor;
 import org.eclipse.jetty.perf.monitoring.jhiccup.JHiccupMonitor;
 import org.eclipse.jetty.perf.monitoring.os.LinuxCpuMonitor;
 import org.eclipse.jetty.perf.monitoring.os.LinuxDiskMonitor;
 import org.eclipse.jetty.perf.monitoring.os.LinuxMemoryMonitor;
 import org.eclipse.jetty.perf.monitoring.os.LinuxNetworkMonitor;
 import org.eclipse.jetty.perf.monitoring.os.LinuxPerfStatMonitor;
+import org.eclipse.jetty.perf.monitoring.os.LinuxProcfsMonitor;
+import org.eclipse.jetty.perf.monitoring.os.LinuxThreadCpuMonitor;
 import org.eclipse.jetty.perf.monitoring.os.WindowsCpuMonitor;
 import org.eclipse.jetty.perf.monitoring.os.WindowsMemoryMonitor;
 import org.eclipse.jetty.perf.monitoring.os.WindowsNetworkMonitor;
 import org.eclipse.jetty.perf.util.IOUtil;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import org.eclipse.jetty.perf.util.Recorder;
 
-public class ConfigurableMonitor implements Closeable
+public class ConfigurableMonitor implements Closeable, Recorder
 {
-    private static final Logger LOG = LoggerFactory.getLogger(ConfigurableMonitor.class);
-
     public enum Item
     {
         CMDLINE_CPU,
@@ -37,7 +35,12 @@ public class ConfigurableMonitor implements Closeable
         CMDLINE_NETWORK,
         CMDLINE_DISK,
 
-        // Only one kind of async profiling can be enabled at a time.
+        // In-process sampling of the procfs CPU, memory, network and disk counters.
+        PROCFS,
+        // CPU of the JVM threads grouped by role: acceptors, selectors, workers, GC, JIT...
+        THREAD_CPU,
+
+        // All the selected async profiling events are recorded by a single profiler session.
         ASYNC_PROF_CPU,
         ASYNC_PROF_ALLOC,
         ASYNC_PROF_LOCK,
@@ -46,6 +49,11 @@ public class ConfigurableMonitor implements Closeable
         PERF_STAT,
 
         JHICCUP,
+        // Java Flight Recorder, including the slow request events of the latency recording handler.
+        JFR,
+        // GC pauses and concurrent cycles, recorded from the JMX notifications.
+        GC_EVENTS,
+        // Only adds the -Xlog:gc* flags to the JVM options.
         GC_LOGS,
     }
 
@@ -53,21 +61,40 @@ public class ConfigurableMonitor implements Closeable
 
     public ConfigurableMonitor(Set<Item> items) throws Exception
     {
-        // If more than 1 async prof item was selected, only keep the 1st one.
-        if (items.stream().filter(item -> item.name().startsWith("ASYNC")).count() > 1)
-        {
-            items = items.stream().filter(item -> !item.name().startsWith("ASYNC")).collect(Collectors.toSet());
-            Item itm = items.stream().filter(item -> item.name().startsWith("ASYNC")).findFirst().orElseThrow();
-            LOG.warn("Multiple ASYNC_PROFILER items were added to the list, only enabling {}", itm);
-            items.add(itm);
-        }
-
+        Set<AsyncProfilerMonitor.Event> asyncProfilerEvents = EnumSet.noneOf(AsyncProfilerMonitor.Event.class);
         for (Item item : items)
         {
-            Monitor monitor = monitorOf(item);
-            if (monitor != null)
-                monitors.add(monitor);
+            switch (item)
+            {
+                case ASYNC_PROF_CPU -> asyncProfilerEvents.add(AsyncProfilerMonitor.Event.CPU);
+                case ASYNC_PROF_ALLOC -> asyncProfilerEvents.add(AsyncProfilerMonitor.Event.ALLOC);
+                case ASYNC_PROF_LOCK -> asyncProfilerEvents.add(AsyncProfilerMonitor.Event.LOCK);
+                case ASYNC_PROF_CACHE_MISSES -> asyncProfilerEvents.add(AsyncProfilerMonitor.Event.CACHE_MISSES);
+                default ->
+                {
+                    Monitor monitor = monitorOf(item);
+                    if (monitor != null)
+                        monitors.add(monitor);
+                }
+            }
         }
+        if (!asyncProfilerEvents.isEmpty() && System.getProperty("os.name").toLowerCase(Locale.ROOT).contains("linux"))
+            monitors.add(new AsyncProfilerMonitor(asyncProfilerEvents));
+    }
+
+    /**
+     * Start the monitors that only record during the recording window, e.g.: the profilers.
+     */
+    @Override
+    public void startRecording()
+    {
+        monitors.stream().filter(monitor -> monitor instanceof Recorder).forEach(monitor -> ((Recorder)monitor).startRecording());
+    }
+
+    @Override
+    public void stopRecording()
+    {
+        monitors.stream().filter(monitor -> monitor instanceof Recorder).forEach(monitor -> ((Recorder)monitor).stopRecording());
     }
 
     @Override
@@ -121,21 +148,13 @@ public class ConfigurableMonitor implements Closeable
                 if (osName.contains("linux"))
                     return new LinuxDiskMonitor();
                 return null;
-            case ASYNC_PROF_CPU:
+            case PROCFS:
                 if (osName.contains("linux"))
-                    return new AsyncProfilerCpuMonitor();
+                    return new LinuxProcfsMonitor();
                 return null;
-            case ASYNC_PROF_ALLOC:
+            case THREAD_CPU:
                 if (osName.contains("linux"))
-                    return new AsyncProfilerAllocationMonitor();
-                return null;
-            case ASYNC_PROF_LOCK:
-                if (osName.contains("linux"))
-                    return new AsyncProfilerLockMonitor();
-                return null;
-            case ASYNC_PROF_CACHE_MISSES:
-                if (osName.contains("linux"))
-                    return new AsyncProfilerCacheMissesMonitor();
+                    return new LinuxThreadCpuMonitor();
                 return null;
             case PERF_STAT:
                 if (osName.contains("linux"))
@@ -143,8 +162,17 @@ public class ConfigurableMonitor implements Closeable
                 return null;
             case JHICCUP:
                 return new JHiccupMonitor();
+            case JFR:
+                return new JfrMonitor();
+            case GC_EVENTS:
+                return new GcMonitor();
             case GC_LOGS:
                 return null;
+            case ASYNC_PROF_CPU:
+            case ASYNC_PROF_ALLOC:
+            case ASYNC_PROF_LOCK:
+            case ASYNC_PROF_CACHE_MISSES:
+                throw new AssertionError("Async profiler items are handled by a single monitor : " + item);
             default:
                 throw new AssertionError("Unknown monitor item : " +item);
         }
@@ -0,0 +1,130 @@
+package org.eclipse.jetty.perf.monitoring.asyncprof;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Set;
+
+import one.profiler.AsyncProfiler;
+import org.eclipse.jetty.perf.monitoring.Monitor;
+import org.eclipse.jetty.perf.util.Recorder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Profiles the current JVM with async-profiler for the duration of the recording window only,
+ * i.e.: between {@link #startRecording()} and {@link #stopRecording()}.
+ * The native library is loaded from the path given by the {@code test.async.profiler.lib} system property
+ * (either the library itself or an async-profiler distribution folder), or else from the async-profiler
+ * artifact on the classpath or from {@code java.library.path}, so nothing is downloaded at run time.
+ * A single event is written as an HTML flame graph; multiple events are recorded together in a single JFR file.
+ */
+public class AsyncProfilerMonitor implements Monitor, Recorder
+{
+    private static final Logger LOG = LoggerFactory.getLogger(AsyncProfilerMonitor.class);
+
+    public static final String LIB_PROPERTY = "test.async.profiler.lib";
+    public static final String JFR_FILENAME = "async-profiler.jfr";
+
+    public enum Event
+    {
+        // Only one of CPU and CACHE_MISSES can be profiled at a time as they are both execution events.
+        CPU("event=cpu"),
+        CACHE_MISSES("event=cache-misses"),
+        // Sample an allocation every 512 KiB allocated.
+        ALLOC("alloc=512k"),
+        // Record the lock contentions that lasted at least 10 us.
+        LOCK("lock=10us");
+
+        private final String option;
+
+        Event(String option)
+        {
+            this.option = option;
+        }
+
+        private String getFilename()
+        {
+            return "async-profiler-" + name().toLowerCase(Locale.ROOT).replace('_', '-') + ".html";
+        }
+    }
+
+    private final AsyncProfiler asyncProfiler;
+    private final Set<Event> events;
+    private boolean recording;
+
+    public AsyncProfilerMonitor(Set<Event> events) throws IOException
+    {
+        if (events.isEmpty())
+            throw new IllegalArgumentException("No event to profile");
+        this.events = EnumSet.copyOf(events);
+        if (this.events.contains(Event.CPU) && this.events.remove(Event.CACHE_MISSES))
+            LOG.warn("CPU and CACHE_MISSES cannot be profiled together, only profiling CPU");
+        this.asyncProfiler = loadAsyncProfiler();
+    }
+
+    private static AsyncProfiler loadAsyncProfiler() throws IOException
+    {
+        String lib = System.getProperty(LIB_PROPERTY);
+        if (lib == null || lib.isBlank())
+            return AsyncProfiler.getInstance();
+
+        File file = new File(lib);
+        if (file.isDirectory())
+        {
+            // The library is in lib/ since async-profiler 3.0, and in build/ before that.
+            File libFile = new File(file, "lib/libasyncProfiler.so");
+            file = libFile.isFile() ? libFile : new File(file, "build/libasyncProfiler.so");
+        }
+        if (!file.isFile())
+            throw new IOException("async-profiler library not found: " + file.getAbsolutePath());
+        return AsyncProfiler.getInstance(file.getAbsolutePath());
+    }
+
+    @Override
+    public synchronized void startRecording()
+    {
+        StringBuilder command = new StringBuilder("start");
+        for (Event event : events)
+        {
+            command.append(',').append(event.option);
+        }
+        if (events.size() > 1)
+            command.append(",jfr,file=").append(new File(JFR_FILENAME).getAbsolutePath());
+        execute(command.toString());
+        recording = true;
+    }
+
+    @Override
+    public synchronized void stopRecording()
+    {
+        if (!recording)
+            return;
+        recording = false;
+        if (events.size() > 1)
+            execute("stop");
+        else
+            execute("stop,file=" + new File(events.iterator().next().getFilename()).getAbsolutePath());
+    }
+
+    private void execute(String command)
+    {
+        try
+        {
+            LOG.debug("async profiler: {}", command);
+            String result = asyncProfiler.execute(command);
+            LOG.debug("async profiler result: {}", result);
+        }
+        catch (IOException | IllegalArgumentException | IllegalStateException e)
+        {
+            LOG.warn("async profiler command failed: {}", command, e);
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        stopRecording();
+    }
+}
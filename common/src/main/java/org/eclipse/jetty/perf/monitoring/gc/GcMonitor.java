@@ -0,0 +1,176 @@
+package org.eclipse.jetty.perf.monitoring.gc;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import com.sun.management.GcInfo;
+import jdk.jfr.consumer.RecordingStream;
+import org.eclipse.jetty.perf.monitoring.Monitor;
+import org.eclipse.jetty.perf.util.LatencyRecorder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Listens to the notifications of the {@link GarbageCollectorMXBean}s and records the duration of every
+ * GC pause and of every concurrent GC cycle into their own histogram logs, as well as every GC event
+ * into a CSV timeline, with the epoch time in millis of the start of the event as first column.
+ * The notifications only have a millisecond resolution, which rounds most ZGC and Shenandoah pauses down to 0,
+ * so the pauses histogram is recorded at nanosecond resolution from the {@value #PAUSE_EVENT_NAME} JFR events instead,
+ * and only falls back to the notifications when JFR is not available. The durations of the CSV timeline
+ * and of the cycles histogram keep the millisecond resolution of the notifications.
+ */
+public class GcMonitor implements Monitor
+{
+    private static final Logger LOG = LoggerFactory.getLogger(GcMonitor.class);
+
+    public static final String EVENTS_FILENAME = "gc-events.csv";
+    public static final String PAUSES_FILENAME = "gc-pauses.hlog";
+    public static final String CYCLES_FILENAME = "gc-cycles.hlog";
+    public static final String PAUSE_EVENT_NAME = "jdk.GCPhasePause";
+
+    private final long jvmStartTime = ManagementFactory.getRuntimeMXBean().getStartTime();
+    private final Set<String> heapPoolNames = ManagementFactory.getMemoryPoolMXBeans().stream()
+        .filter(pool -> pool.getType() == MemoryType.HEAP)
+        .map(MemoryPoolMXBean::getName)
+        .collect(Collectors.toSet());
+    private final LatencyRecorder pausesRecorder;
+    private final LatencyRecorder cyclesRecorder;
+    private final PrintWriter printWriter;
+    private final NotificationListener listener = this::onNotification;
+    private final List<NotificationEmitter> emitters = new ArrayList<>();
+    private final RecordingStream pausesStream;
+
+    public GcMonitor() throws IOException
+    {
+        this(EVENTS_FILENAME, PAUSES_FILENAME, CYCLES_FILENAME);
+    }
+
+    public GcMonitor(String eventsFilename, String pausesFilename, String cyclesFilename) throws IOException
+    {
+        printWriter = new PrintWriter(eventsFilename, StandardCharsets.UTF_8);
+        printWriter.println("start_ms,duration_ms,kind,collector,action,cause,heap_before,heap_after");
+        printWriter.flush();
+        pausesRecorder = new LatencyRecorder(pausesFilename);
+        cyclesRecorder = new LatencyRecorder(cyclesFilename);
+        pausesRecorder.startRecording();
+        cyclesRecorder.startRecording();
+        pausesStream = startPausesStream(pausesRecorder);
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+        {
+            if (gc instanceof NotificationEmitter emitter)
+            {
+                emitter.addNotificationListener(listener, notification -> GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType()), null);
+                emitters.add(emitter);
+            }
+        }
+    }
+
+    private static RecordingStream startPausesStream(LatencyRecorder pausesRecorder)
+    {
+        try
+        {
+            RecordingStream recordingStream = new RecordingStream();
+            recordingStream.enable(PAUSE_EVENT_NAME).withoutThreshold().withoutStackTrace();
+            recordingStream.onEvent(PAUSE_EVENT_NAME, event -> pausesRecorder.recordValue(event.getDuration().toNanos()));
+            recordingStream.startAsync();
+            return recordingStream;
+        }
+        catch (Exception e)
+        {
+            LOG.warn("JFR unavailable, GC pauses are recorded at millisecond resolution", e);
+            return null;
+        }
+    }
+
+    /**
+     * @return true if the collector reports concurrent cycles rather than pauses, e.g.: "ZGC Major Cycles" or "G1 Concurrent GC"
+     */
+    public static boolean isConcurrent(String collectorName)
+    {
+        return collectorName.endsWith("Cycles") || collectorName.contains("Concurrent");
+    }
+
+    private void onNotification(Notification notification, Object handback)
+    {
+        GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo.from((CompositeData)notification.getUserData());
+        GcInfo gcInfo = info.getGcInfo();
+        boolean concurrent = isConcurrent(info.getGcName());
+        long durationMillis = gcInfo.getDuration();
+        if (concurrent)
+            cyclesRecorder.recordValue(TimeUnit.MILLISECONDS.toNanos(durationMillis));
+        else if (pausesStream == null)
+            pausesRecorder.recordValue(TimeUnit.MILLISECONDS.toNanos(durationMillis));
+
+        synchronized (this)
+        {
+            printWriter.print(jvmStartTime + gcInfo.getStartTime());
+            printWriter.print(',');
+            printWriter.print(durationMillis);
+            printWriter.print(',');
+            printWriter.print(concurrent ? "cycle" : "pause");
+            printWriter.print(',');
+            printWriter.print(info.getGcName().replace(',', ' '));
+            printWriter.print(',');
+            printWriter.print(info.getGcAction().replace(',', ' '));
+            printWriter.print(',');
+            printWriter.print(info.getGcCause().replace(',', ' '));
+            printWriter.print(',');
+            printWriter.print(heapUsed(gcInfo.getMemoryUsageBeforeGc()));
+            printWriter.print(',');
+            printWriter.println(heapUsed(gcInfo.getMemoryUsageAfterGc()));
+            printWriter.flush();
+        }
+    }
+
+    private long heapUsed(Map<String, MemoryUsage> memoryUsages)
+    {
+        // The usages are reported for all the memory pools, including the non-heap ones.
+        return memoryUsages.entrySet().stream()
+            .filter(entry -> heapPoolNames.contains(entry.getKey()))
+            .mapToLong(entry -> entry.getValue().getUsed())
+            .sum();
+    }
+
+    @Override
+    public void close()
+    {
+        for (NotificationEmitter emitter : emitters)
+        {
+            try
+            {
+                emitter.removeNotificationListener(listener);
+            }
+            catch (ListenerNotFoundException e)
+            {
+                LOG.debug("GC listener already removed", e);
+            }
+        }
+        // JFR delivers the events about once per second, the pauses of the last second may not be recorded.
+        if (pausesStream != null)
+            pausesStream.close();
+        pausesRecorder.stopRecording();
+        cyclesRecorder.stopRecording();
+        synchronized (this)
+        {
+            printWriter.close();
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package org.eclipse.jetty.perf.monitoring.jfr;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import org.eclipse.jetty.perf.monitoring.Monitor;
+import org.eclipse.jetty.perf.util.Recorder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs a Java Flight Recorder recording with the low-overhead "default" JDK settings during the recording window,
+ * i.e.: between {@link #startRecording()} and {@link #stopRecording()}, and dumps it to a file when stopped.
+ * The recording also enables the {@link SlowRequestEvent}s, with the threshold given by the
+ * {@code test.jfr.slow.request.threshold.ms} system property.
+ */
+public class JfrMonitor implements Monitor, Recorder
+{
+    private static final Logger LOG = LoggerFactory.getLogger(JfrMonitor.class);
+
+    public static final String DEFAULT_FILENAME = "jetty-perf.jfr";
+    public static final String SLOW_REQUEST_THRESHOLD_PROPERTY = "test.jfr.slow.request.threshold.ms";
+
+    private final String filename;
+    private final Recording recording;
+
+    public JfrMonitor() throws IOException, ParseException
+    {
+        this(DEFAULT_FILENAME, Duration.ofMillis(Long.getLong(SLOW_REQUEST_THRESHOLD_PROPERTY, 100L)));
+    }
+
+    public JfrMonitor(String filename, Duration slowRequestThreshold) throws IOException, ParseException
+    {
+        this.filename = filename;
+        this.recording = new Recording(Configuration.getConfiguration("default"));
+        recording.setName("jetty-perf");
+        recording.enable(SlowRequestEvent.class).withThreshold(slowRequestThreshold);
+    }
+
+    @Override
+    public synchronized void startRecording()
+    {
+        recording.start();
+    }
+
+    @Override
+    public synchronized void stopRecording()
+    {
+        if (recording.getState() != RecordingState.RUNNING)
+            return;
+        recording.stop();
+        try
+        {
+            recording.dump(Path.of(filename));
+        }
+        catch (IOException e)
+        {
+            LOG.warn("Error dumping the JFR recording to {}", filename, e);
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        stopRecording();
+        recording.close();
+    }
+}
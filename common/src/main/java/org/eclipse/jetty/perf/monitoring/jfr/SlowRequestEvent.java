@@ -0,0 +1,69 @@
+package org.eclipse.jetty.perf.monitoring.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import jdk.jfr.Timespan;
+
+/**
+ * A JFR event spanning from the handling of a request until its stream completed, only committed when
+ * lasting longer than the threshold of the recording, see {@link JfrMonitor}.
+ * It is committed by the thread that completed the stream, and records the thread that handled the request.
+ */
+@Name(SlowRequestEvent.NAME)
+@Label("Slow Request")
+@Description("A request whose handling took longer than the threshold")
+@Category({"Jetty", "Perf"})
+@Threshold("100 ms")
+@StackTrace(false)
+public class SlowRequestEvent extends jdk.jfr.Event
+{
+    public static final String NAME = "org.eclipse.jetty.perf.SlowRequest";
+
+    private static final EventType EVENT_TYPE = EventType.getEventType(SlowRequestEvent.class);
+
+    @Label("Method")
+    public String method;
+
+    @Label("URI")
+    public String uri;
+
+    @Label("Status")
+    public int status;
+
+    @Label("Latency")
+    @Description("The time from the beginning of the request until its stream completed, including parsing")
+    @Timespan(Timespan.NANOSECONDS)
+    public long latency;
+
+    @Label("Protocol")
+    public String protocol;
+
+    @Label("Connection")
+    public String connection;
+
+    @Label("Remote Address")
+    public String remoteAddress;
+
+    @Label("Stream")
+    @Description("The request id, which is the stream id for multiplexed protocols")
+    public String stream;
+
+    @Label("Handling Thread")
+    public Thread handlingThread;
+
+    @Label("Failure")
+    public String failure;
+
+    /**
+     * @return whether a recording enabled this event, so that no event is created when none is going to be committed
+     */
+    public static boolean isEventEnabled()
+    {
+        return EVENT_TYPE.isEnabled();
+    }
+}
@@ -0,0 +1,489 @@
+package org.eclipse.jetty.perf.monitoring.os;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.eclipse.jetty.perf.monitoring.Monitor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Samples {@code /proc/stat}, {@code /proc/meminfo}, {@code /proc/net/dev} and {@code /proc/diskstats} every second
+ * from within the JVM and writes one CSV line per sample. The first column is the epoch time of the sample in millis,
+ * so that the series can be aligned with the intervals of the histogram logs; counters are written as deltas
+ * since the previous sample.
+ * The procfs files are kept open and re-read from their start, and both parsing and formatting work on
+ * pre-allocated buffers so that sampling does not allocate.
+ */
+public class LinuxProcfsMonitor implements Monitor
+{
+    private static final Logger LOG = LoggerFactory.getLogger(LinuxProcfsMonitor.class);
+
+    public static final String DEFAULT_FILENAME = "os/procfs.csv";
+    public static final String HEADER = "timestamp_ms," +
+        "cpu_user_pct,cpu_system_pct,cpu_iowait_pct,cpu_irq_pct,cpu_steal_pct,context_switches,interrupts,procs_running," +
+        "mem_used_kb,mem_available_kb,mem_cached_kb," +
+        "net_rx_kb,net_tx_kb,net_rx_packets,net_tx_packets,net_drops," +
+        "disk_read_ops,disk_read_kb,disk_write_ops,disk_write_kb,disk_busy_pct";
+
+    private static final byte[] CPU = ascii("cpu ");
+    private static final byte[] CTXT = ascii("ctxt ");
+    private static final byte[] INTR = ascii("intr ");
+    private static final byte[] PROCS_RUNNING = ascii("procs_running ");
+    private static final byte[] MEM_TOTAL = ascii("MemTotal:");
+    private static final byte[] MEM_AVAILABLE = ascii("MemAvailable:");
+    private static final byte[] CACHED = ascii("Cached:");
+    private static final byte[] LOOPBACK = ascii("lo");
+
+    // The indexes of the counters in the arrays of current and previous values.
+    private static final int CPU_USER_INDEX = 0;
+    private static final int CPU_NICE_INDEX = 1;
+    private static final int CPU_SYSTEM_INDEX = 2;
+    private static final int CPU_IDLE_INDEX = 3;
+    private static final int CPU_IOWAIT_INDEX = 4;
+    private static final int CPU_IRQ_INDEX = 5;
+    private static final int CPU_SOFTIRQ_INDEX = 6;
+    private static final int CPU_STEAL_INDEX = 7;
+    private static final int CTXT_INDEX = 8;
+    private static final int INTR_INDEX = 9;
+    private static final int NET_RX_BYTES_INDEX = 10;
+    private static final int NET_RX_PACKETS_INDEX = 11;
+    private static final int NET_TX_BYTES_INDEX = 12;
+    private static final int NET_TX_PACKETS_INDEX = 13;
+    private static final int NET_DROPS_INDEX = 14;
+    private static final int DISK_READ_OPS_INDEX = 15;
+    private static final int DISK_READ_SECTORS_INDEX = 16;
+    private static final int DISK_WRITE_OPS_INDEX = 17;
+    private static final int DISK_WRITE_SECTORS_INDEX = 18;
+    private static final int COUNTERS = 19;
+
+    private final ProcFile stat = new ProcFile("/proc/stat");
+    private final ProcFile meminfo = new ProcFile("/proc/meminfo");
+    private final ProcFile netDev = new ProcFile("/proc/net/dev");
+    private final ProcFile diskstats = new ProcFile("/proc/diskstats");
+    private final byte[][] disks;
+    private final OutputStream output;
+    private final byte[] line = new byte[1024];
+    private int lineLength;
+    private final Thread thread;
+
+    private final long[] previous = new long[COUNTERS];
+    private final long[] current = new long[COUNTERS];
+    private final long[] previousDiskTicks;
+    private long previousTimestamp;
+
+    private long procsRunning;
+    private long memTotal;
+    private long memAvailable;
+    private long memCached;
+    private long diskBusyPermyriad;
+
+    public LinuxProcfsMonitor() throws IOException
+    {
+        this(DEFAULT_FILENAME);
+    }
+
+    public LinuxProcfsMonitor(String filename) throws IOException
+    {
+        File outputFile = new File(filename);
+        if (!outputFile.getParentFile().isDirectory() && !outputFile.getParentFile().mkdirs())
+            throw new IOException("Cannot create folder for output file " + outputFile.getAbsolutePath());
+        this.output = new FileOutputStream(outputFile);
+        this.output.write(ascii(HEADER + "\n"));
+        this.disks = listDisks();
+        this.previousDiskTicks = new long[disks.length];
+        this.thread = new Thread(this::run, "procfs-monitor");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    private static byte[][] listDisks()
+    {
+        // Only the whole block devices are listed in /sys/block, counting their partitions as well would count the I/O twice.
+        String[] names = new File("/sys/block").list();
+        if (names == null)
+            return new byte[0][];
+        return Arrays.stream(names)
+            .filter(name -> !name.startsWith("loop") && !name.startsWith("ram"))
+            .map(LinuxProcfsMonitor::ascii)
+            .toArray(byte[][]::new);
+    }
+
+    private void run()
+    {
+        try
+        {
+            sample();
+            System.arraycopy(current, 0, previous, 0, COUNTERS);
+            long period = TimeUnit.SECONDS.toNanos(1);
+            long next = System.nanoTime() + period;
+            while (!Thread.currentThread().isInterrupted())
+            {
+                LockSupport.parkNanos(next - System.nanoTime());
+                if (System.nanoTime() - next < 0L)
+                    continue;
+                next += period;
+                long timestamp = sample();
+                writeLine(timestamp);
+                System.arraycopy(current, 0, previous, 0, COUNTERS);
+            }
+        }
+        catch (IOException e)
+        {
+            LOG.warn("Error sampling procfs", e);
+        }
+    }
+
+    private long sample() throws IOException
+    {
+        long timestamp = System.currentTimeMillis();
+        long elapsedMillis = timestamp - previousTimestamp;
+        previousTimestamp = timestamp;
+        Arrays.fill(current, 0L);
+        sampleStat();
+        sampleMeminfo();
+        sampleNetDev();
+        sampleDiskstats(elapsedMillis);
+        return timestamp;
+    }
+
+    private void sampleStat() throws IOException
+    {
+        ProcFile file = stat.read();
+        do
+        {
+            if (file.startsWith(CPU))
+            {
+                file.skipToken();
+                for (int i = CPU_USER_INDEX; i <= CPU_STEAL_INDEX; i++)
+                {
+                    current[i] = file.nextLong();
+                }
+            }
+            else if (file.startsWith(CTXT))
+            {
+                file.skipToken();
+                current[CTXT_INDEX] = file.nextLong();
+            }
+            else if (file.startsWith(INTR))
+            {
+                file.skipToken();
+                current[INTR_INDEX] = file.nextLong();
+            }
+            else if (file.startsWith(PROCS_RUNNING))
+            {
+                file.skipToken();
+                procsRunning = file.nextLong();
+            }
+        }
+        while (file.nextLine());
+    }
+
+    private void sampleMeminfo() throws IOException
+    {
+        ProcFile file = meminfo.read();
+        do
+        {
+            if (file.startsWith(MEM_TOTAL))
+            {
+                file.skipToken();
+                memTotal = file.nextLong();
+            }
+            else if (file.startsWith(MEM_AVAILABLE))
+            {
+                file.skipToken();
+                memAvailable = file.nextLong();
+            }
+            else if (file.startsWith(CACHED))
+            {
+                file.skipToken();
+                memCached = file.nextLong();
+            }
+        }
+        while (file.nextLine());
+    }
+
+    private void sampleNetDev() throws IOException
+    {
+        ProcFile file = netDev.read();
+        // Skip the 2 header lines.
+        file.nextLine();
+        while (file.nextLine())
+        {
+            // The interface name is followed by a colon that may not be followed by a space.
+            file.skipWhitespace();
+            boolean loopback = file.tokenEquals(LOOPBACK, (byte)':');
+            file.skipPast((byte)':');
+            if (loopback)
+                continue;
+            current[NET_RX_BYTES_INDEX] += file.nextLong();
+            current[NET_RX_PACKETS_INDEX] += file.nextLong();
+            file.nextLong(); // errs
+            current[NET_DROPS_INDEX] += file.nextLong();
+            file.nextLong(); // fifo
+            file.nextLong(); // frame
+            file.nextLong(); // compressed
+            file.nextLong(); // multicast
+            current[NET_TX_BYTES_INDEX] += file.nextLong();
+            current[NET_TX_PACKETS_INDEX] += file.nextLong();
+            file.nextLong(); // errs
+            current[NET_DROPS_INDEX] += file.nextLong();
+        }
+    }
+
+    private void sampleDiskstats(long elapsedMillis) throws IOException
+    {
+        diskBusyPermyriad = 0L;
+        ProcFile file = diskstats.read();
+        do
+        {
+            file.nextLong(); // major
+            file.nextLong(); // minor
+            file.skipWhitespace();
+            int disk = -1;
+            for (int i = 0; i < disks.length; i++)
+            {
+                if (file.tokenEquals(disks[i], (byte)' '))
+                {
+                    disk = i;
+                    break;
+                }
+            }
+            if (disk < 0)
+                continue;
+            file.skipToken();
+            current[DISK_READ_OPS_INDEX] += file.nextLong();
+            file.nextLong(); // reads merged
+            current[DISK_READ_SECTORS_INDEX] += file.nextLong();
+            file.nextLong(); // time reading
+            current[DISK_WRITE_OPS_INDEX] += file.nextLong();
+            file.nextLong(); // writes merged
+            current[DISK_WRITE_SECTORS_INDEX] += file.nextLong();
+            file.nextLong(); // time writing
+            file.nextLong(); // I/Os in progress
+            long ioTicks = file.nextLong();
+            // Report the busiest disk, as an average over all disks would hide a saturated one.
+            if (elapsedMillis > 0L && previousDiskTicks[disk] > 0L)
+                diskBusyPermyriad = Math.max(diskBusyPermyriad, Math.min(10_000L, (ioTicks - previousDiskTicks[disk]) * 10_000L / elapsedMillis));
+            previousDiskTicks[disk] = ioTicks;
+        }
+        while (file.nextLine());
+    }
+
+    private void writeLine(long timestamp) throws IOException
+    {
+        long cpuTotal = 0L;
+        for (int i = CPU_USER_INDEX; i <= CPU_STEAL_INDEX; i++)
+        {
+            cpuTotal += delta(i);
+        }
+        cpuTotal = Math.max(1L, cpuTotal);
+
+        lineLength = 0;
+        append(timestamp);
+        appendPercent((delta(CPU_USER_INDEX) + delta(CPU_NICE_INDEX)) * 10_000L / cpuTotal);
+        appendPercent(delta(CPU_SYSTEM_INDEX) * 10_000L / cpuTotal);
+        appendPercent(delta(CPU_IOWAIT_INDEX) * 10_000L / cpuTotal);
+        appendPercent((delta(CPU_IRQ_INDEX) + delta(CPU_SOFTIRQ_INDEX)) * 10_000L / cpuTotal);
+        appendPercent(delta(CPU_STEAL_INDEX) * 10_000L / cpuTotal);
+        append(delta(CTXT_INDEX));
+        append(delta(INTR_INDEX));
+        append(procsRunning);
+        append(memTotal - memAvailable);
+        append(memAvailable);
+        append(memCached);
+        append(delta(NET_RX_BYTES_INDEX) / 1024L);
+        append(delta(NET_TX_BYTES_INDEX) / 1024L);
+        append(delta(NET_RX_PACKETS_INDEX));
+        append(delta(NET_TX_PACKETS_INDEX));
+        append(delta(NET_DROPS_INDEX));
+        append(delta(DISK_READ_OPS_INDEX));
+        // Sectors are always 512 bytes in /proc/diskstats.
+        append(delta(DISK_READ_SECTORS_INDEX) / 2L);
+        append(delta(DISK_WRITE_OPS_INDEX));
+        append(delta(DISK_WRITE_SECTORS_INDEX) / 2L);
+        appendPercent(diskBusyPermyriad);
+        line[lineLength - 1] = '\n';
+        output.write(line, 0, lineLength);
+    }
+
+    private long delta(int index)
+    {
+        return current[index] - previous[index];
+    }
+
+    private void append(long value)
+    {
+        if (value < 0L)
+        {
+            line[lineLength++] = '-';
+            value = -value;
+        }
+        int start = lineLength;
+        do
+        {
+            line[lineLength++] = (byte)('0' + value % 10L);
+            value /= 10L;
+        }
+        while (value > 0L);
+        for (int i = start, j = lineLength - 1; i < j; i++, j--)
+        {
+            byte b = line[i];
+            line[i] = line[j];
+            line[j] = b;
+        }
+        line[lineLength++] = ',';
+    }
+
+    private void appendPercent(long hundredths)
+    {
+        append(hundredths / 100L);
+        line[lineLength - 1] = '.';
+        long decimals = hundredths % 100L;
+        line[lineLength++] = (byte)('0' + decimals / 10L);
+        line[lineLength++] = (byte)('0' + decimals % 10L);
+        line[lineLength++] = ',';
+    }
+
+    @Override
+    public void close() throws Exception
+    {
+        thread.interrupt();
+        thread.join();
+        output.close();
+        for (ProcFile file : List.of(stat, meminfo, netDev, diskstats))
+        {
+            file.close();
+        }
+    }
+
+    private static byte[] ascii(String s)
+    {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * A procfs file read in full into a reusable buffer, with a cursor to parse it line by line.
+     */
+    private static class ProcFile implements AutoCloseable
+    {
+        private final RandomAccessFile file;
+        private byte[] buffer = new byte[16 * 1024];
+        private int length;
+        private int position;
+
+        private ProcFile(String path)
+        {
+            RandomAccessFile file = null;
+            try
+            {
+                file = new RandomAccessFile(path, "r");
+            }
+            catch (IOException e)
+            {
+                LOG.warn("Cannot open {}: {}", path, e.getMessage());
+            }
+            this.file = file;
+        }
+
+        private ProcFile read() throws IOException
+        {
+            length = 0;
+            position = 0;
+            if (file == null)
+                return this;
+            // procfs regenerates the content of the file when it is read again from its start.
+            file.seek(0L);
+            while (true)
+            {
+                if (length == buffer.length)
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                int read = file.read(buffer, length, buffer.length - length);
+                if (read < 0)
+                    break;
+                length += read;
+            }
+            return this;
+        }
+
+        private boolean nextLine()
+        {
+            skipPast((byte)'\n');
+            return position < length;
+        }
+
+        private void skipPast(byte b)
+        {
+            while (position < length && buffer[position] != b)
+            {
+                position++;
+            }
+            if (position < length)
+                position++;
+        }
+
+        private void skipWhitespace()
+        {
+            while (position < length && buffer[position] == ' ')
+            {
+                position++;
+            }
+        }
+
+        private void skipToken()
+        {
+            skipWhitespace();
+            while (position < length && buffer[position] != ' ' && buffer[position] != '\n')
+            {
+                position++;
+            }
+        }
+
+        private boolean startsWith(byte[] prefix)
+        {
+            if (length - position < prefix.length)
+                return false;
+            for (int i = 0; i < prefix.length; i++)
+            {
+                if (buffer[position + i] != prefix[i])
+                    return false;
+            }
+            return true;
+        }
+
+        private boolean tokenEquals(byte[] token, byte terminator)
+        {
+            return startsWith(token) && position + token.length < length && buffer[position + token.length] == terminator;
+        }
+
+        private long nextLong()
+        {
+            skipWhitespace();
+            long value = 0L;
+            while (position < length)
+            {
+                byte b = buffer[position];
+                if (b < '0' || b > '9')
+                    break;
+                value = value * 10L + (b - '0');
+                position++;
+            }
+            return value;
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            if (file != null)
+                file.close();
+        }
+    }
+}
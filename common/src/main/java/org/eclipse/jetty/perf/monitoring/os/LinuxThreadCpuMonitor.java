@@ -0,0 +1,212 @@
+package org.eclipse.jetty.perf.monitoring.os;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.eclipse.jetty.perf.monitoring.Monitor;
+import org.eclipse.jetty.perf.util.ThreadRoleClassifier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Samples the CPU time consumed by every thread of the JVM every second and writes it to a CSV file,
+ * grouped by the role of the threads.
+ * Java threads are measured with {@link ThreadMXBean} and grouped by their {@link ThreadRoleClassifier.Role role}:
+ * Jetty acceptors, selectors, reserved threads or {@code QueuedThreadPool} workers. As Jetty threads can switch
+ * roles, the CPU of the whole second is attributed to the role the thread had when sampled.
+ * The GC and JIT threads are not visible to {@link ThreadMXBean}, so they are measured from
+ * the {@code stat} file of each task in {@code /proc/self/task} and grouped by their native name, which also gives
+ * the total CPU of the process.
+ */
+public class LinuxThreadCpuMonitor implements Monitor
+{
+    private static final Logger LOG = LoggerFactory.getLogger(LinuxThreadCpuMonitor.class);
+
+    public static final String DEFAULT_FILENAME = "os/thread-cpu.csv";
+
+    // USER_HZ, which is 100 on all the architectures supported by Linux.
+    private static final long MILLIS_PER_TICK = 10L;
+    // The serial GC collects on the VM Thread, which is reported as other JVM CPU.
+    private static final List<String> GC_THREAD_PREFIXES = List.of("GC Thread", "G1 ", "ZDirector", "ZDriver", "ZWorker", "ZStat", "ZUnmapper", "ZUncommitter", "Shenandoah");
+    private static final List<String> JIT_THREAD_PREFIXES = List.of("C1 CompilerThre", "C2 CompilerThre", "JVMCI");
+
+    private final Timer timer = new Timer("thread-cpu-monitor", true);
+    private final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+    private final ThreadRoleClassifier threadRoleClassifier = new ThreadRoleClassifier(threadMXBean);
+    private final Map<Long, Long> javaThreadCpuTimes = new HashMap<>();
+    private final Map<String, Long> nativeThreadTicks = new HashMap<>();
+    private final PrintWriter printWriter;
+
+    public LinuxThreadCpuMonitor() throws IOException
+    {
+        this(DEFAULT_FILENAME);
+    }
+
+    public LinuxThreadCpuMonitor(String filename) throws IOException
+    {
+        File outputFile = new File(filename);
+        if (!outputFile.getParentFile().isDirectory() && !outputFile.getParentFile().mkdirs())
+            throw new IOException("Cannot create folder for output file " + outputFile.getAbsolutePath());
+        printWriter = new PrintWriter(outputFile, StandardCharsets.UTF_8);
+        printWriter.println("timestamp_ms,acceptor_cpu_ms,selector_cpu_ms,reserved_cpu_ms,worker_cpu_ms,other_java_cpu_ms,gc_cpu_ms,jit_cpu_ms,other_jvm_cpu_ms,total_cpu_ms");
+        // Take a first sample to only report the CPU consumed from now on.
+        sampleJavaThreads();
+        sampleNativeThreads();
+        timer.scheduleAtFixedRate(new TimerTask()
+        {
+            @Override
+            public void run()
+            {
+                sample();
+            }
+        }, 1000, 1000);
+    }
+
+    private synchronized void sample()
+    {
+        try
+        {
+            long timestamp = System.currentTimeMillis();
+            long[] javaCpuMillis = sampleJavaThreads();
+            long[] nativeCpuMillis = sampleNativeThreads();
+            long gcCpuMillis = nativeCpuMillis[0];
+            long jitCpuMillis = nativeCpuMillis[1];
+            long totalCpuMillis = nativeCpuMillis[2];
+
+            long accountedCpuMillis = gcCpuMillis + jitCpuMillis;
+            printWriter.print(timestamp);
+            for (long cpuMillis : javaCpuMillis)
+            {
+                printWriter.print(',');
+                printWriter.print(cpuMillis);
+                accountedCpuMillis += cpuMillis;
+            }
+            printWriter.print(',');
+            printWriter.print(gcCpuMillis);
+            printWriter.print(',');
+            printWriter.print(jitCpuMillis);
+            printWriter.print(',');
+            // The native measurement has a 10ms granularity, so the difference can be slightly negative.
+            printWriter.print(Math.max(0L, totalCpuMillis - accountedCpuMillis));
+            printWriter.print(',');
+            printWriter.println(totalCpuMillis);
+            printWriter.flush();
+        }
+        catch (Throwable x)
+        {
+            LOG.warn("Error sampling the thread CPU", x);
+        }
+    }
+
+    /**
+     * @return the CPU time in millis consumed by each {@link ThreadRoleClassifier.Role} since the previous sample
+     */
+    private long[] sampleJavaThreads()
+    {
+        long[] cpuNanos = new long[ThreadRoleClassifier.Role.values().length];
+        Map<Long, Long> cpuTimes = new HashMap<>();
+        long[] threadIds = threadMXBean.getAllThreadIds();
+        ThreadRoleClassifier.Role[] threadRoles = threadRoleClassifier.classify(threadIds);
+        for (int i = 0; i < threadIds.length; i++)
+        {
+            long id = threadIds[i];
+            long cpuTime = threadMXBean.getThreadCpuTime(id);
+            if (cpuTime < 0L)
+                continue;
+            cpuTimes.put(id, cpuTime);
+            cpuNanos[threadRoles[i].ordinal()] += cpuTime - javaThreadCpuTimes.getOrDefault(id, 0L);
+        }
+        // Forget the threads that died.
+        javaThreadCpuTimes.clear();
+        javaThreadCpuTimes.putAll(cpuTimes);
+
+        long[] cpuMillis = new long[cpuNanos.length];
+        for (int i = 0; i < cpuNanos.length; i++)
+        {
+            cpuMillis[i] = TimeUnit.NANOSECONDS.toMillis(cpuNanos[i]);
+        }
+        return cpuMillis;
+    }
+
+    /**
+     * @return the CPU time in millis consumed by the GC threads, the JIT threads and all the threads since the previous sample
+     */
+    private long[] sampleNativeThreads()
+    {
+        long gcTicks = 0L;
+        long jitTicks = 0L;
+        long totalTicks = 0L;
+        Map<String, Long> ticks = new HashMap<>();
+        try (Stream<Path> tasks = Files.list(Path.of("/proc/self/task")))
+        {
+            for (Path task : tasks.toList())
+            {
+                String stat;
+                try
+                {
+                    stat = Files.readString(task.resolve("stat"), StandardCharsets.US_ASCII);
+                }
+                catch (IOException e)
+                {
+                    // The thread died since the task folder was listed.
+                    continue;
+                }
+                // The format is: tid (comm) state ppid ... with utime and stime being the 14th and 15th fields.
+                int open = stat.indexOf('(');
+                int close = stat.lastIndexOf(')');
+                String name = stat.substring(open + 1, close);
+                String[] fields = stat.substring(close + 2).split(" ");
+                long threadTicks = Long.parseLong(fields[11]) + Long.parseLong(fields[12]);
+                // The tid is part of the key as native thread names are not unique.
+                String key = task.getFileName() + name;
+                ticks.put(key, threadTicks);
+                long delta = threadTicks - nativeThreadTicks.getOrDefault(key, 0L);
+                totalTicks += delta;
+                if (startsWithAny(name, GC_THREAD_PREFIXES))
+                    gcTicks += delta;
+                else if (startsWithAny(name, JIT_THREAD_PREFIXES))
+                    jitTicks += delta;
+            }
+        }
+        catch (IOException e)
+        {
+            LOG.debug("Cannot list the native threads", e);
+        }
+        nativeThreadTicks.clear();
+        nativeThreadTicks.putAll(ticks);
+        return new long[]{gcTicks * MILLIS_PER_TICK, jitTicks * MILLIS_PER_TICK, totalTicks * MILLIS_PER_TICK};
+    }
+
+    private static boolean startsWithAny(String name, List<String> prefixes)
+    {
+        for (String prefix : prefixes)
+        {
+            if (name.startsWith(prefix))
+                return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void close()
+    {
+        timer.cancel();
+        synchronized (this)
+        {
+            printWriter.close();
+        }
+    }
+}
@@ -19,19 +19,39 @@ import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 
 import org.eclipse.jetty.client.HttpClient;
 import org.eclipse.jetty.http2.server.HTTP2CServerConnectionFactory;
+import org.eclipse.jetty.http3.server.HTTP3ServerConnectionFactory;
 import org.eclipse.jetty.perf.handler.ModernLatencyRecordingHandler;
+import org.eclipse.jetty.perf.handler.PartitionedLatencyRecordingHandler;
 import org.eclipse.jetty.perf.histogram.loader.ResponseStatusListener;
 import org.eclipse.jetty.perf.histogram.loader.ResponseTimeListener;
+import org.eclipse.jetty.perf.loader.ClientTransports;
+import org.eclipse.jetty.perf.loader.ClosedLoopLoadGenerator;
+import org.eclipse.jetty.perf.loader.HTTP3ClientTransportBuilder;
+import org.eclipse.jetty.perf.loader.HttpClientTelemetryRecorder;
+import org.eclipse.jetty.perf.loader.IdleConnections;
+import org.eclipse.jetty.perf.loader.ResourceMix;
+import org.eclipse.jetty.perf.loader.TrackingClientTransportBuilder;
 import org.eclipse.jetty.perf.monitoring.ConfigurableMonitor;
+import org.eclipse.jetty.perf.util.ArtifactDownloader.Artifact;
+import org.eclipse.jetty.perf.util.ConnectionStatsRecorder;
+import org.eclipse.jetty.perf.util.HandshakeRecordingSslContextFactory;
 import org.eclipse.jetty.perf.util.IOUtil;
 import org.eclipse.jetty.perf.util.LatencyRecorder;
+import org.eclipse.jetty.perf.util.PartitionedLatencyRecorder;
 import org.eclipse.jetty.perf.util.Recorder;
 import org.eclipse.jetty.perf.util.SerializableSupplier;
+import org.eclipse.jetty.perf.util.ServerResourceRecorder;
+import org.eclipse.jetty.quic.server.QuicServerConnector;
+import org.eclipse.jetty.quic.server.ServerQuicConfiguration;
+import org.eclipse.jetty.server.AbstractNetworkConnector;
 import org.eclipse.jetty.server.ConnectionFactory;
 import org.eclipse.jetty.server.Handler;
 import org.eclipse.jetty.server.HttpConfiguration;
@@ -40,8 +60,12 @@ import org.eclipse.jetty.server.SecureRequestCustomizer;
 import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.server.ServerConnector;
 import org.eclipse.jetty.server.SslConnectionFactory;
+import org.eclipse.jetty.util.VirtualThreads;
 import org.eclipse.jetty.util.ssl.SslContextFactory;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.mortbay.jetty.load.generator.HTTP1ClientTransportBuilder;
 import org.mortbay.jetty.load.generator.HTTP2ClientTransportBuilder;
+import org.mortbay.jetty.load.generator.HTTPClientTransportBuilder;
 import org.mortbay.jetty.load.generator.LoadGenerator;
 import org.mortbay.jetty.load.generator.Resource;
 import org.mortbay.jetty.orchestrator.Cluster;
@@ -58,20 +82,42 @@ import static org.eclipse.jetty.perf.util.ReportUtil.generateReport;
 public class ClusteredPerfTest implements Serializable, Closeable
 {
     private static final Logger LOG = LoggerFactory.getLogger(ClusteredPerfTest.class);
+    private static final Duration IDLE_CONNECTIONS_TIMEOUT = Duration.ofMinutes(5);
 
     private final Duration warmupDuration;
     private final Duration runDuration;
     private final EnumSet<ConfigurableMonitor.Item> monitoredItems;
     private final PerfTestParams.Protocol protocol;
+    private final boolean serverPhaseRecording;
+    private final boolean serverPartitionedRecording;
+    private final int serverPartitionedMaxRoutes;
+    private final boolean earlyAbort;
     private final URI serverUri;
     private final int loaderRate;
     private final int loaderThreads;
+    private final PerfTestParams.LoadModel loadModel;
+    private final int loaderConcurrency;
+    private final ClosedLoopLoadGenerator.ThinkTime thinkTime;
+    private final Duration meanThinkTime;
+    private final ResourceMix resourceMix;
+    private final int connectionChurn;
+    private final int idleConnections;
+    private final boolean serverResourceRecording;
+    private final boolean serverVirtualThreads;
+    private final int acceptors;
+    private final int selectors;
+    private final int connectors;
+    private final int serverMinThreads;
+    private final int serverMaxThreads;
+    private final int serverReservedThreads;
     private final int probeRate;
     private final String reportRootPath; // java.nio.Path isn't serializable, so we must use a String.
     private final SerializableSupplier<Handler> testedHandlerSupplier;
     private final int participantCount;
     private final Collection<String> nodeArrayIds;
     private transient Cluster cluster; // not serializable, but there is no need to access this field from remote lambdas.
+    private transient EarlyAbortMonitor earlyAbortMonitor;
+    private transient int runCount;
 
     public ClusteredPerfTest(String testName, PerfTestParams perfTestParams, Duration warmupDuration, Duration runDuration, SerializableSupplier<Handler> testedHandlerSupplier, Path reportRootPath) throws Exception
     {
@@ -79,9 +125,28 @@ public class ClusteredPerfTest implements Serializable, Closeable
         this.runDuration = runDuration;
         this.monitoredItems = perfTestParams.getMonitoredItems();
         this.protocol = perfTestParams.getProtocol();
+        this.serverPhaseRecording = perfTestParams.isServerPhaseRecording();
+        this.serverPartitionedRecording = perfTestParams.isServerPartitionedRecording();
+        this.serverPartitionedMaxRoutes = perfTestParams.getServerPartitionedMaxRoutes();
+        this.earlyAbort = perfTestParams.isEarlyAbort();
         this.serverUri = perfTestParams.getServerUri();
         this.loaderRate = perfTestParams.getLoaderRate();
         this.loaderThreads = perfTestParams.getLoaderThreads();
+        this.loadModel = perfTestParams.getLoadModel();
+        this.loaderConcurrency = perfTestParams.getLoaderConcurrency();
+        this.thinkTime = perfTestParams.getThinkTime();
+        this.meanThinkTime = perfTestParams.getMeanThinkTime();
+        this.resourceMix = perfTestParams.getResourceMix();
+        this.connectionChurn = perfTestParams.getConnectionChurn();
+        this.idleConnections = perfTestParams.getIdleConnections();
+        this.serverResourceRecording = perfTestParams.isServerResourceRecording();
+        this.serverVirtualThreads = perfTestParams.isServerVirtualThreads();
+        this.acceptors = perfTestParams.getAcceptors();
+        this.selectors = perfTestParams.getSelectors();
+        this.connectors = perfTestParams.getConnectors();
+        this.serverMinThreads = perfTestParams.getServerMinThreads();
+        this.serverMaxThreads = perfTestParams.getServerMaxThreads();
+        this.serverReservedThreads = perfTestParams.getServerReservedThreads();
         this.probeRate = perfTestParams.getProbeRate();
         this.testedHandlerSupplier = testedHandlerSupplier;
         this.reportRootPath = reportRootPath.toString();
@@ -89,6 +154,8 @@ public class ClusteredPerfTest implements Serializable, Closeable
         this.participantCount = clusterConfiguration.nodeArrays().stream().mapToInt(na -> na.nodes().size()).sum() + 1; // + 1 b/c of the test itself
         this.nodeArrayIds = clusterConfiguration.nodeArrays().stream().map(NodeArrayConfiguration::id).toList();
         this.cluster = new Cluster(testName, clusterConfiguration);
+        if (earlyAbort)
+            this.earlyAbortMonitor = new EarlyAbortMonitor(cluster, perfTestParams, runDuration);
     }
 
     @Override
@@ -103,6 +170,32 @@ public class ClusteredPerfTest implements Serializable, Closeable
 
     public void execute() throws Exception
     {
+        String abortReason = execute(loaderRate, warmupDuration, runDuration, Path.of(reportRootPath));
+        if (abortReason != null)
+            throw new Exception("Run aborted early: " + abortReason);
+    }
+
+    /**
+     * Run the test once with the given loader rate, the cluster JVMs are kept alive after the run
+     * so that this method can be called again, i.e.: with another loader rate.
+     * @return the reason why the run was aborted early, or null if it ran for its whole duration
+     */
+    public String execute(int loaderRate, Duration warmupDuration, Duration runDuration, Path reportPath) throws Exception
+    {
+        return execute(loaderRate, warmupDuration, runDuration, reportPath, EnumSet.of(Artifact.ALL));
+    }
+
+    /**
+     * @param artifacts the kinds of artifacts to download from the nodes for the report; everything is downloaded if the run fails
+     */
+    public String execute(int loaderRate, Duration warmupDuration, Duration runDuration, Path reportPath, Set<Artifact> artifacts) throws Exception
+    {
+        // Barriers and counters are not reusable, so name them after the run.
+        int runIndex = runCount++;
+        String runStartBarrier = "run-start-barrier-" + runIndex;
+        String runEndBarrier = "run-end-barrier-" + runIndex;
+        String abortCounterName = EarlyAbortMonitor.ABORT_COUNTER_NAME + "-" + runIndex;
+
         NodeArray serverArray = cluster.nodeArray("server");
         NodeArray loadersArray = cluster.nodeArray("loaders");
         NodeArray probeArray = cluster.nodeArray("probe");
@@ -121,11 +214,20 @@ public class ClusteredPerfTest implements Serializable, Closeable
         {
             future.get(30, TimeUnit.SECONDS);
         }
+        LOG.info("Run #{} with a loader rate of {}", runIndex, loaderRate);
 
-        LOG.info("Starting the server...");
+        LOG.info("Starting the server{}...", serverVirtualThreads ? " with virtual threads" : "");
         serverArray.executeOnAll(tools -> startServer(protocol, serverUri.getPort(), tools.nodeEnvironment())).get(30, TimeUnit.SECONDS);
+        if (idleConnections > 0)
+        {
+            LOG.info("Parking {} idle connections per loader...", idleConnections);
+            loadersArray.executeOnAll(tools -> openIdleConnections(protocol, serverUri, idleConnections, tools.nodeEnvironment())).get(IDLE_CONNECTIONS_TIMEOUT.toSeconds() + 30, TimeUnit.SECONDS);
+        }
         LOG.info("Starting the loaders...");
-        loadersArray.executeOnAll(tools -> runLoadGenerator(protocol, serverUri, loaderRate, loaderThreads, warmupDuration, runDuration, tools.nodeEnvironment())).get(30, TimeUnit.SECONDS);
+        if (loadModel == PerfTestParams.LoadModel.CLOSED)
+            loadersArray.executeOnAll(tools -> runClosedLoopLoadGenerator(protocol, serverUri, resourceMix, loaderConcurrency, thinkTime, meanThinkTime, warmupDuration, runDuration, tools.nodeEnvironment())).get(30, TimeUnit.SECONDS);
+        else
+            loadersArray.executeOnAll(tools -> runLoadGenerator(protocol, serverUri, resourceMix, loaderRate, loaderThreads, warmupDuration, runDuration, tools.nodeEnvironment())).get(30, TimeUnit.SECONDS);
         LOG.info("Starting the probe...");
         probeArray.executeOnAll(tools -> runProbeGenerator(protocol, serverUri, probeRate, warmupDuration, runDuration, tools.nodeEnvironment())).get(30, TimeUnit.SECONDS);
 
@@ -137,18 +239,50 @@ public class ClusteredPerfTest implements Serializable, Closeable
 
         NodeJob recordingJob = tools ->
         {
-            try (ConfigurableMonitor ignore = new ConfigurableMonitor(monitoredItems))
+            try (ConfigurableMonitor monitor = new ConfigurableMonitor(monitoredItems))
             {
+                Map<String, Object> env = tools.nodeEnvironment();
                 @SuppressWarnings("unchecked")
-                List<Recorder> recorders = (List<Recorder>)tools.nodeEnvironment().get(Recorder.class.getName());
+                List<Recorder> recorders = (List<Recorder>)env.get(Recorder.class.getName());
+                LiveStatsPublisher liveStatsPublisher = null;
+                if (earlyAbort)
+                {
+                    ResponseStatusListener responseStatusListener = (ResponseStatusListener)env.get(ResponseStatusListener.class.getName());
+                    liveStatsPublisher = new LiveStatsPublisher((LatencyRecorder)env.get(LatencyRecorder.class.getName()), responseStatusListener == null ? () -> 0L : responseStatusListener::getErrorCount);
+                }
 
                 recorders.forEach(Recorder::startRecording);
-                tools.barrier("run-start-barrier", participantCount).await();
-                tools.barrier("run-end-barrier", participantCount).await();
+                monitor.startRecording();
+                tools.barrier(runStartBarrier, participantCount).await();
+                tools.barrier(runEndBarrier, participantCount).await();
+                monitor.stopRecording();
                 recorders.forEach(Recorder::stopRecording);
+                if (liveStatsPublisher != null)
+                    liveStatsPublisher.close();
 
-                CompletableFuture<?> cf = (CompletableFuture<?>)tools.nodeEnvironment().get(CompletableFuture.class.getName());
-                cf.get();
+                CompletableFuture<?> cf = (CompletableFuture<?>)env.get(CompletableFuture.class.getName());
+                if (earlyAbort && tools.atomicCounter(abortCounterName, 0L).get() != 0L)
+                {
+                    // The run was aborted, do not wait for the load generators to run for their whole configured duration.
+                    LoadGenerator loadGenerator = (LoadGenerator)env.get(LoadGenerator.class.getName());
+                    if (loadGenerator != null)
+                        loadGenerator.interrupt();
+                    ClosedLoopLoadGenerator closedLoopLoadGenerator = (ClosedLoopLoadGenerator)env.get(ClosedLoopLoadGenerator.class.getName());
+                    if (closedLoopLoadGenerator != null)
+                        closedLoopLoadGenerator.interrupt();
+                    try
+                    {
+                        cf.get();
+                    }
+                    catch (ExecutionException e)
+                    {
+                        LOG.debug("Interrupted load generation failed", e);
+                    }
+                }
+                else
+                {
+                    cf.get();
+                }
             }
             catch (Throwable x)
             {
@@ -160,16 +294,20 @@ public class ClusteredPerfTest implements Serializable, Closeable
         NodeArrayFuture loadersFuture = loadersArray.executeOnAll(recordingJob);
         NodeArrayFuture probeFuture = probeArray.executeOnAll(recordingJob);
 
+        String abortReason = null;
         try
         {
             try
             {
                 LOG.info("  Signalling all participants to start recording...");
-                cluster.tools().barrier("run-start-barrier", participantCount).await(30, TimeUnit.SECONDS);
+                cluster.tools().barrier(runStartBarrier, participantCount).await(30, TimeUnit.SECONDS);
                 LOG.info("  Waiting for the duration of the run...");
-                Thread.sleep(runDuration.toMillis());
+                if (earlyAbortMonitor != null)
+                    abortReason = earlyAbortMonitor.await(runDuration, abortCounterName);
+                else
+                    Thread.sleep(runDuration.toMillis());
                 LOG.info("  Signalling all participants to stop recording...");
-                cluster.tools().barrier("run-end-barrier", participantCount).await(30, TimeUnit.SECONDS);
+                cluster.tools().barrier(runEndBarrier, participantCount).await(30, TimeUnit.SECONDS);
                 LOG.info("  Signalled all participants to stop recording");
             }
             finally
@@ -177,11 +315,17 @@ public class ClusteredPerfTest implements Serializable, Closeable
                 waitForFutures(30, TimeUnit.SECONDS, serverFuture, loadersFuture, probeFuture);
             }
 
+            if (idleConnections > 0)
+            {
+                LOG.info("Closing the idle connections...");
+                loadersArray.executeOnAll(tools -> closeIdleConnections(tools.nodeEnvironment())).get(IDLE_CONNECTIONS_TIMEOUT.toSeconds() + 30, TimeUnit.SECONDS);
+            }
+
             LOG.info("Stopping the server...");
             serverArray.executeOnAll((tools) -> stopServer(tools.nodeEnvironment())).get(30, TimeUnit.SECONDS);
 
             LOG.info("Generating report...");
-            generateReport(Path.of(reportRootPath), nodeArrayIds, cluster);
+            generateReport(reportPath, nodeArrayIds, cluster, artifacts);
 
             long after = System.nanoTime();
             LOG.info("Done; elapsed={} ms", TimeUnit.NANOSECONDS.toMillis(after - before));
@@ -192,7 +336,7 @@ public class ClusteredPerfTest implements Serializable, Closeable
             try
             {
                 LOG.info("Downloading artefacts before rethrowing...");
-                generateReport(Path.of(reportRootPath), nodeArrayIds, cluster);
+                generateReport(reportPath, nodeArrayIds, cluster);
 
                 LOG.info("Dumping threads of pending jobs before rethrowing...");
                 NodeJob dump = (tools) ->
@@ -223,6 +367,8 @@ public class ClusteredPerfTest implements Serializable, Closeable
             }
             throw new Exception(msg.toString(), e);
         }
+
+        return abortReason;
     }
 
     private void waitForFutures(long time, TimeUnit unit, NodeArrayFuture... futures) throws Exception
@@ -250,7 +396,17 @@ public class ClusteredPerfTest implements Serializable, Closeable
 
     private void startServer(PerfTestParams.Protocol protocol, int serverPort, Map<String, Object> env) throws Exception
     {
-        Server server = new Server();
+        QueuedThreadPool serverThreadPool = new QueuedThreadPool(serverMaxThreads, serverMinThreads);
+        serverThreadPool.setReservedThreads(serverReservedThreads);
+        if (serverVirtualThreads)
+        {
+            // The selectors and the non-blocking tasks keep running on the platform threads of the pool.
+            Executor virtualThreadsExecutor = VirtualThreads.getDefaultVirtualThreadsExecutor();
+            if (virtualThreadsExecutor == null)
+                throw new IllegalStateException("Virtual threads are not supported by JVM " + System.getProperty("java.vm.version"));
+            serverThreadPool.setVirtualThreadsExecutor(virtualThreadsExecutor);
+        }
+        Server server = new Server(serverThreadPool);
 
 //        server.setDumpBeforeStop(true);
 
@@ -265,19 +421,24 @@ public class ClusteredPerfTest implements Serializable, Closeable
             httpConfiguration.addCustomizer(customizer);
         }
 
-        ConnectionFactory http;
-        if (protocol.getVersion() == PerfTestParams.HttpVersion.HTTP2)
-            http = new HTTP2CServerConnectionFactory(httpConfiguration);
-        else
-            http = new HttpConnectionFactory(httpConfiguration);
+        List<Recorder> recorders = new ArrayList<>();
 
-        List<ConnectionFactory> connectionFactories = new ArrayList<>();
+        SslContextFactory.Server serverSslContextFactory = null;
+        Path targetTmpFolder = Paths.get(System.getProperty("java.io.tmpdir")).resolve(getClass().getSimpleName());
         if (protocol.isSecure())
         {
-            SslContextFactory.Server serverSslContextFactory = new SslContextFactory.Server();
+            if (connectionChurn > 0)
+            {
+                LatencyRecorder handshakeLatencyRecorder = new LatencyRecorder("perf-tls-handshake.hlog");
+                recorders.add(handshakeLatencyRecorder);
+                serverSslContextFactory = new HandshakeRecordingSslContextFactory.Server(handshakeLatencyRecorder);
+            }
+            else
+            {
+                serverSslContextFactory = new SslContextFactory.Server();
+            }
             // Copy keystore from classpath to temp file.
             URL resource = Objects.requireNonNull(getClass().getResource("/keystore.p12"));
-            Path targetTmpFolder = Paths.get(System.getProperty("java.io.tmpdir")).resolve(getClass().getSimpleName());
             Files.createDirectories(targetTmpFolder);
             Path targetKeystore = targetTmpFolder.resolve("keystore.p12");
             try (InputStream inputStream = resource.openStream(); OutputStream outputStream = Files.newOutputStream(targetKeystore))
@@ -286,25 +447,87 @@ public class ClusteredPerfTest implements Serializable, Closeable
             }
             serverSslContextFactory.setKeyStorePath(targetKeystore.toString());
             serverSslContextFactory.setKeyStorePassword("storepwd");
-            SslConnectionFactory ssl = new SslConnectionFactory(serverSslContextFactory, http.getProtocol());
-            connectionFactories.add(ssl);
         }
-        connectionFactories.add(http);
 
-        ServerConnector serverConnector = new ServerConnector(server, 4, 24, connectionFactories.toArray(new ConnectionFactory[0]));
-        serverConnector.setPort(serverPort);
-
-        server.addConnector(serverConnector);
+        List<AbstractNetworkConnector> serverConnectors = new ArrayList<>();
+        if (protocol.getVersion() == PerfTestParams.HttpVersion.HTTP3)
+        {
+            // QUIC reads the key and certificates from PEM files that are exported to that directory.
+            Path pemWorkDirectory = targetTmpFolder.resolve("pem");
+            Files.createDirectories(pemWorkDirectory);
+            ServerQuicConfiguration quicConfiguration = new ServerQuicConfiguration(serverSslContextFactory, pemWorkDirectory);
+            serverConnectors.add(new QuicServerConnector(server, quicConfiguration, new HTTP3ServerConnectionFactory(quicConfiguration, httpConfiguration)));
+        }
+        else
+        {
+            for (int i = 0; i < connectors; i++)
+            {
+                ConnectionFactory http;
+                if (protocol.getVersion() == PerfTestParams.HttpVersion.HTTP2)
+                    http = new HTTP2CServerConnectionFactory(httpConfiguration);
+                else
+                    http = new HttpConnectionFactory(httpConfiguration);
+
+                List<ConnectionFactory> connectionFactories = new ArrayList<>();
+                if (serverSslContextFactory != null)
+                    connectionFactories.add(new SslConnectionFactory(serverSslContextFactory, http.getProtocol()));
+                connectionFactories.add(http);
+
+                ServerConnector serverConnector = new ServerConnector(server, acceptors, selectors, connectionFactories.toArray(new ConnectionFactory[0]));
+                // Let the kernel spread the incoming connections over all the connectors listening on the same port.
+                if (connectors > 1)
+                    serverConnector.setReusePort(true);
+                serverConnectors.add(serverConnector);
+            }
+        }
+        ConnectionStatsRecorder connectionStatsRecorder = null;
+        if (connectionChurn > 0)
+        {
+            connectionStatsRecorder = new ConnectionStatsRecorder("connections.csv", new LatencyRecorder("perf-connection-lifetime.hlog"));
+            recorders.add(connectionStatsRecorder);
+        }
+        for (AbstractNetworkConnector serverConnector : serverConnectors)
+        {
+            serverConnector.setPort(serverPort);
+            if (connectionStatsRecorder != null)
+                serverConnector.addBean(connectionStatsRecorder);
+            // The parked connections must survive the whole run; 0 disables the idle timeout.
+            if (idleConnections > 0)
+                serverConnector.setIdleTimeout(0);
+            server.addConnector(serverConnector);
+        }
+        if (serverResourceRecording)
+            recorders.add(new ServerResourceRecorder("server-resources.csv", serverConnectors));
 
         LatencyRecorder latencyRecorder = new LatencyRecorder("perf.hlog");
-        Handler latencyRecordingHandler = new ModernLatencyRecordingHandler(testedHandlerSupplier.get(), latencyRecorder);
+        recorders.add(latencyRecorder);
+        Handler latencyRecordingHandler;
+        if (serverPhaseRecording)
+        {
+            LatencyRecorder parseLatencyRecorder = new LatencyRecorder("perf-parse.hlog");
+            LatencyRecorder dispatchLatencyRecorder = new LatencyRecorder("perf-dispatch.hlog");
+            LatencyRecorder writeLatencyRecorder = new LatencyRecorder("perf-write.hlog");
+            recorders.addAll(List.of(parseLatencyRecorder, dispatchLatencyRecorder, writeLatencyRecorder));
+            latencyRecordingHandler = new ModernLatencyRecordingHandler(testedHandlerSupplier.get(), latencyRecorder, parseLatencyRecorder, dispatchLatencyRecorder, writeLatencyRecorder);
+        }
+        else
+        {
+            latencyRecordingHandler = new ModernLatencyRecordingHandler(testedHandlerSupplier.get(), latencyRecorder);
+        }
+        if (serverPartitionedRecording)
+        {
+            PartitionedLatencyRecorder partitionedLatencyRecorder = new PartitionedLatencyRecorder("perf", serverPartitionedMaxRoutes);
+            recorders.add(partitionedLatencyRecorder);
+            latencyRecordingHandler = new PartitionedLatencyRecordingHandler(latencyRecordingHandler, partitionedLatencyRecorder);
+        }
 //        StatisticsHandler statisticsHandler = new StatisticsHandler(latencyRecordingHandler);
 //        server.setHandler(statisticsHandler);
         server.setHandler(latencyRecordingHandler);
         server.start();
 
 //        env.put(StatisticsHandler.class.getName(), statisticsHandler);
-        env.put(Recorder.class.getName(), List.of(latencyRecorder));
+        env.put(Recorder.class.getName(), recorders);
+        env.put(LatencyRecorder.class.getName(), latencyRecorder);
         env.put(CompletableFuture.class.getName(), CompletableFuture.completedFuture(null));
         env.put(Server.class.getName(), server);
     }
@@ -320,35 +543,69 @@ public class ClusteredPerfTest implements Serializable, Closeable
 //        }
     }
 
-    private void runLoadGenerator(PerfTestParams.Protocol protocol, URI serverUri, int loaderRate, int loaderThreads, Duration warmupDuration, Duration runDuration, Map<String, Object> env) throws Exception
+    private void openIdleConnections(PerfTestParams.Protocol protocol, URI serverUri, int count, Map<String, Object> env) throws Exception
     {
+        IdleConnections idleConnections = new IdleConnections(serverUri, protocol.getVersion(), count);
+        env.put(IdleConnections.class.getName(), idleConnections);
+        int opened = idleConnections.open(IDLE_CONNECTIONS_TIMEOUT);
+        if (opened < count)
+            LOG.warn("only {} of {} idle connections could be opened", opened, count);
+    }
+
+    private void closeIdleConnections(Map<String, Object> env)
+    {
+        IdleConnections idleConnections = (IdleConnections)env.remove(IdleConnections.class.getName());
+        if (idleConnections != null)
+            idleConnections.close();
+    }
+
+    private void runLoadGenerator(PerfTestParams.Protocol protocol, URI serverUri, ResourceMix resourceMix, int loaderRate, int loaderThreads, Duration warmupDuration, Duration runDuration, Map<String, Object> env) throws Exception
+    {
+        // The load generator's rate is in resource trees per second, and each tree sends a whole iteration of the mix
+        // as a burst of concurrent requests.
+        int resourceRate = resourceMix.toResourceRate(loaderRate);
         LatencyRecorder latencyRecorder = new LatencyRecorder("perf.hlog");
-        ResponseTimeListener responseTimeListener = new ResponseTimeListener(latencyRecorder);
+        LatencyRecorder correctedLatencyRecorder = new LatencyRecorder("perf-corrected.hlog");
+        ResponseTimeListener responseTimeListener = new ResponseTimeListener(latencyRecorder, correctedLatencyRecorder);
         ResponseStatusListener responseStatusListener = new ResponseStatusListener("http-client-statuses.log");
-        env.put(Recorder.class.getName(), List.of(latencyRecorder, responseStatusListener));
+        HttpClientTelemetryRecorder httpClientTelemetryRecorder = new HttpClientTelemetryRecorder("http-client-telemetry.csv", new LatencyRecorder("perf-queue-wait.hlog"));
+        List<Recorder> recorders = new ArrayList<>(List.of(latencyRecorder, correctedLatencyRecorder, responseStatusListener, httpClientTelemetryRecorder));
+        SslContextFactory.Client sslContextFactory;
+        if (connectionChurn > 0 && protocol.isSecure())
+        {
+            LatencyRecorder handshakeLatencyRecorder = new LatencyRecorder("perf-tls-handshake.hlog");
+            recorders.add(handshakeLatencyRecorder);
+            sslContextFactory = new HandshakeRecordingSslContextFactory.Client(true, handshakeLatencyRecorder);
+        }
+        else
+        {
+            sslContextFactory = new SslContextFactory.Client(true);
+        }
+        env.put(Recorder.class.getName(), recorders);
+        env.put(LatencyRecorder.class.getName(), latencyRecorder);
+        env.put(ResponseStatusListener.class.getName(), responseStatusListener);
 
         LoadGenerator.Builder builder = LoadGenerator.builder()
             .scheme(serverUri.getScheme())
             .host(serverUri.getHost())
             .port(serverUri.getPort())
-            .sslContextFactory(new SslContextFactory.Client(true))
+            .sslContextFactory(sslContextFactory)
             .runFor(warmupDuration.plus(runDuration).toSeconds(), TimeUnit.SECONDS)
             .threads(loaderThreads)
-            .resourceRate(loaderRate)
-            .resource(new Resource(serverUri.getPath()))
+            .resourceRate(resourceRate)
+            .resource(resourceMix.toResource())
             .resourceListener(responseTimeListener)
             .listener(responseTimeListener)
             .resourceListener(responseStatusListener)
             .listener(responseStatusListener)
+            .httpClientTransportBuilder(newTrackingClientTransportBuilder(protocol, connectionChurn, httpClientTelemetryRecorder))
+            .requestListener(httpClientTelemetryRecorder.getRequestListener())
+            .requestListener(responseTimeListener.getRequestListener())
             ;
 
-        if (protocol.getVersion() == PerfTestParams.HttpVersion.HTTP2)
-        {
-            builder.httpClientTransportBuilder(new HTTP2ClientTransportBuilder());
-        }
-
         LoadGenerator loadGenerator = builder.build();
-        LOG.info("load generation begin with client '{}'", HttpClient.USER_AGENT);
+        env.put(LoadGenerator.class.getName(), loadGenerator);
+        LOG.info("load generation begin with client '{}' and resource mix {}", HttpClient.USER_AGENT, resourceMix);
         CompletableFuture<Void> cf = loadGenerator.begin();
         cf = cf.whenComplete((x, f) -> {
             if (f == null)
@@ -363,12 +620,48 @@ public class ClusteredPerfTest implements Serializable, Closeable
         env.put(CompletableFuture.class.getName(), cf);
     }
 
-    private void runProbeGenerator(PerfTestParams.Protocol protocol, URI serverUri, int probeRate, Duration warmupDuration, Duration runDuration, Map<String, Object> env) throws Exception
+    private void runClosedLoopLoadGenerator(PerfTestParams.Protocol protocol, URI serverUri, ResourceMix resourceMix, int concurrency, ClosedLoopLoadGenerator.ThinkTime thinkTime, Duration meanThinkTime, Duration warmupDuration, Duration runDuration, Map<String, Object> env) throws Exception
     {
         LatencyRecorder latencyRecorder = new LatencyRecorder("perf.hlog");
         ResponseTimeListener responseTimeListener = new ResponseTimeListener(latencyRecorder);
         ResponseStatusListener responseStatusListener = new ResponseStatusListener("http-client-statuses.log");
-        env.put(Recorder.class.getName(), List.of(latencyRecorder, responseStatusListener));
+        HttpClientTelemetryRecorder httpClientTelemetryRecorder = new HttpClientTelemetryRecorder("http-client-telemetry.csv", new LatencyRecorder("perf-queue-wait.hlog"));
+        env.put(Recorder.class.getName(), List.of(latencyRecorder, responseStatusListener, httpClientTelemetryRecorder));
+        env.put(LatencyRecorder.class.getName(), latencyRecorder);
+        env.put(ResponseStatusListener.class.getName(), responseStatusListener);
+
+        ClosedLoopLoadGenerator loadGenerator = new ClosedLoopLoadGenerator(serverUri, resourceMix, protocol.getVersion(),
+            concurrency, thinkTime, meanThinkTime, warmupDuration.plus(runDuration), List.of(responseTimeListener, responseStatusListener));
+        if (connectionChurn > 0)
+            ClientTransports.setMaxRequestsPerConnection(loadGenerator.getHttpClientTransport(), connectionChurn);
+        httpClientTelemetryRecorder.track(loadGenerator.getHttpClientTransport());
+        loadGenerator.addRequestListener(httpClientTelemetryRecorder.getRequestListener());
+        env.put(ClosedLoopLoadGenerator.class.getName(), loadGenerator);
+        LOG.info("closed-loop load generation begin with {} users and {} think time of {} ms", concurrency, thinkTime, meanThinkTime.toMillis());
+        CompletableFuture<Void> cf = loadGenerator.begin();
+        cf = cf.whenComplete((x, f) -> {
+            if (f == null)
+            {
+                LOG.info("closed-loop load generation complete");
+            }
+            else
+            {
+                LOG.info("closed-loop load generation failure", f);
+            }
+        });
+        env.put(CompletableFuture.class.getName(), cf);
+    }
+
+    private void runProbeGenerator(PerfTestParams.Protocol protocol, URI serverUri, int probeRate, Duration warmupDuration, Duration runDuration, Map<String, Object> env) throws Exception
+    {
+        LatencyRecorder latencyRecorder = new LatencyRecorder("perf.hlog");
+        LatencyRecorder correctedLatencyRecorder = new LatencyRecorder("perf-corrected.hlog");
+        ResponseTimeListener responseTimeListener = new ResponseTimeListener(latencyRecorder, correctedLatencyRecorder);
+        ResponseStatusListener responseStatusListener = new ResponseStatusListener("http-client-statuses.log");
+        HttpClientTelemetryRecorder httpClientTelemetryRecorder = new HttpClientTelemetryRecorder("http-client-telemetry.csv", new LatencyRecorder("perf-queue-wait.hlog"));
+        env.put(Recorder.class.getName(), List.of(latencyRecorder, correctedLatencyRecorder, responseStatusListener, httpClientTelemetryRecorder));
+        env.put(LatencyRecorder.class.getName(), latencyRecorder);
+        env.put(ResponseStatusListener.class.getName(), responseStatusListener);
 
         LoadGenerator.Builder builder = LoadGenerator.builder()
             .scheme(serverUri.getScheme())
@@ -383,14 +676,13 @@ public class ClusteredPerfTest implements Serializable, Closeable
             .listener(responseTimeListener)
             .resourceListener(responseStatusListener)
             .listener(responseStatusListener)
+            .httpClientTransportBuilder(newTrackingClientTransportBuilder(protocol, 0, httpClientTelemetryRecorder))
+            .requestListener(httpClientTelemetryRecorder.getRequestListener())
+            .requestListener(responseTimeListener.getRequestListener())
             ;
 
-        if (protocol.getVersion() == PerfTestParams.HttpVersion.HTTP2)
-        {
-            builder.httpClientTransportBuilder(new HTTP2ClientTransportBuilder());
-        }
-
         LoadGenerator loadGenerator = builder.build();
+        env.put(LoadGenerator.class.getName(), loadGenerator);
         LOG.info("probe generation begin with client '{}'", HttpClient.USER_AGENT);
         CompletableFuture<Void> cf = loadGenerator.begin();
         cf = cf.whenComplete((x, f) -> {
@@ -405,4 +697,23 @@ public class ClusteredPerfTest implements Serializable, Closeable
         });
         env.put(CompletableFuture.class.getName(), cf);
     }
+
+    /**
+     * @param maxRequestsPerConnection the number of requests after which connections are replaced, or 0 to keep them
+     */
+    private static HTTPClientTransportBuilder newTrackingClientTransportBuilder(PerfTestParams.Protocol protocol, int maxRequestsPerConnection, HttpClientTelemetryRecorder httpClientTelemetryRecorder)
+    {
+        HTTPClientTransportBuilder transportBuilder = switch (protocol.getVersion())
+        {
+            case HTTP11 -> new HTTP1ClientTransportBuilder();
+            case HTTP2 -> new HTTP2ClientTransportBuilder();
+            case HTTP3 -> new HTTP3ClientTransportBuilder();
+        };
+        return new TrackingClientTransportBuilder(transportBuilder, transport ->
+        {
+            if (maxRequestsPerConnection > 0)
+                ClientTransports.setMaxRequestsPerConnection(transport, maxRequestsPerConnection);
+            httpClientTelemetryRecorder.track(transport);
+        });
+    }
 }
@@ -0,0 +1,101 @@
+package org.eclipse.jetty.perf.test;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import org.eclipse.jetty.perf.util.SerializableSupplier;
+import org.eclipse.jetty.server.Handler;
+import org.mortbay.jetty.orchestrator.configuration.NodeArrayConfiguration;
+
+import static org.eclipse.jetty.perf.assertions.Assertions.loadServerResourceSamples;
+
+/**
+ * Runs the same workload against a matrix of server connector topologies, i.e.: number of acceptors,
+ * selectors and connectors sharing the port with SO_REUSEPORT, and compares their throughput, latency and CPU usage.
+ */
+public class ConnectorTopologyPerfTest
+{
+    /**
+     * @param topologies the points of the sweep, each one being an array of acceptors, selectors and connectors
+     * @return true if no point of the sweep was aborted early
+     */
+    public static boolean runSweep(String testName, PerfTestParams params, Duration warmupDuration, Duration runDuration, int[][] topologies, SerializableSupplier<Handler> testedHandlerSupplier) throws Exception
+    {
+        List<SweepPerfTest.Result<int[], Columns>> results = SweepPerfTest.runSweep(testName, params, warmupDuration, runDuration, new TopologySweep(), List.of(topologies), testedHandlerSupplier);
+        return results.stream().allMatch(result -> result.getAbortReason() == null);
+    }
+
+    private static class TopologySweep implements SweepPerfTest.Sweep<int[], Columns>
+    {
+        @Override
+        public String getTitle()
+        {
+            return "Connector topologies";
+        }
+
+        @Override
+        public String getCsvFilename()
+        {
+            return "connector-topology.csv";
+        }
+
+        @Override
+        public String getCsvHeader()
+        {
+            return "acceptors,selectors,connectors,server_cpu_pct";
+        }
+
+        @Override
+        public String getTableHeader()
+        {
+            return String.format("%9s %9s %10s %12s", "acceptors", "selectors", "connectors", "server CPU %");
+        }
+
+        @Override
+        public String getPointName(int[] topology)
+        {
+            return "topology-" + topology[0] + "x" + topology[1] + "x" + topology[2];
+        }
+
+        @Override
+        public PerfTestParams configure(PerfTestParams params, int[] topology)
+        {
+            return params.withConnectorTopology(topology[0], topology[1], topology[2]);
+        }
+
+        @Override
+        public Columns evaluate(int[] topology, Path pointReportPath, NodeArrayConfiguration serverCfg, Duration runDuration, List<SweepPerfTest.Result<int[], Columns>> previousResults) throws IOException
+        {
+            List<long[]> samples = loadServerResourceSamples(pointReportPath, serverCfg);
+            // process_cpu_ms is the 6th column, in percents of a single core.
+            double serverCpuPercent = samples.stream().mapToLong(values -> values[5]).sum() * 100.0 / (samples.size() * 1000L);
+            return new Columns(topology, serverCpuPercent);
+        }
+    }
+
+    private static class Columns implements SweepPerfTest.Columns
+    {
+        private final int[] topology;
+        private final double serverCpuPercent;
+
+        private Columns(int[] topology, double serverCpuPercent)
+        {
+            this.topology = topology;
+            this.serverCpuPercent = serverCpuPercent;
+        }
+
+        @Override
+        public String toCsv()
+        {
+            return String.format("%d,%d,%d,%.2f", topology[0], topology[1], topology[2], serverCpuPercent);
+        }
+
+        @Override
+        public String toTable()
+        {
+            return String.format("%9d %9d %10d %12.1f", topology[0], topology[1], topology[2], serverCpuPercent);
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package org.eclipse.jetty.perf.test;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.HdrHistogram.Histogram;
+import org.mortbay.jetty.orchestrator.Cluster;
+import org.mortbay.jetty.orchestrator.ClusterTools;
+import org.mortbay.jetty.orchestrator.NodeArray;
+import org.mortbay.jetty.orchestrator.configuration.NodeArrayConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs on the test driver: polls the live stats published by the nodes every second, merges the interval
+ * histograms of the nodes of each node array, and aborts the run when the probe or server p99, or the loaders' error rate, stay clearly
+ * outside of the expectations of the {@link PerfTestParams} for a few consecutive seconds.
+ * @see LiveStatsPublisher
+ */
+class EarlyAbortMonitor
+{
+    static final String ABORT_COUNTER_NAME = "run-aborted";
+
+    private static final Logger LOG = LoggerFactory.getLogger(EarlyAbortMonitor.class);
+    private static final int CONSECUTIVE_VIOLATIONS = 3;
+
+    private final ClusterTools tools;
+    private final Duration gracePeriod;
+    private final List<Check> checks = new ArrayList<>();
+
+    EarlyAbortMonitor(Cluster cluster, PerfTestParams params, Duration runDuration)
+    {
+        this.tools = cluster.tools();
+        this.gracePeriod = params.getEarlyAbortGracePeriod();
+        double maxErrorRate = params.getEarlyAbortMaxErrorRate();
+        long runSeconds = Math.max(1L, runDuration.toSeconds());
+        for (NodeArrayConfiguration nodeArrayConfiguration : params.getClusterConfiguration().nodeArrays())
+        {
+            String id = nodeArrayConfiguration.id();
+            int nodeCount = nodeArrayConfiguration.nodes().size();
+            // The expected p99 values are integrals in us over all intervals of all nodes, turn them into a per-interval value in ns,
+            // which the p99 of the merged interval histograms of the nodes is compared to.
+            long maxP99 = Long.MAX_VALUE;
+            // An expectation of 0 means there is none, e.g.: when searching for the saturation point.
+            if (id.equals("server") && params.getExpectedP99ServerLatency() > 0)
+                maxP99 = (long)(TimeUnit.MICROSECONDS.toNanos(params.getExpectedP99ServerLatency()) / (runSeconds * nodeCount) * params.getEarlyAbortP99Factor());
+            else if (id.equals("probe") && params.getExpectedP99ProbeLatency() > 0)
+                maxP99 = (long)(TimeUnit.MICROSECONDS.toNanos(params.getExpectedP99ProbeLatency()) / (runSeconds * nodeCount) * params.getEarlyAbortP99Factor());
+            boolean checkErrors = !id.equals("server");
+            checks.add(new Check(id, cluster.nodeArray(id), maxP99, checkErrors, maxErrorRate));
+        }
+    }
+
+    /**
+     * Waits for the given duration, unless the run has to be aborted earlier.
+     * @param abortCounterName the name of the counter to set when the run is aborted
+     * @return the reason of the abort, or null if the run lasted for the whole duration
+     */
+    String await(Duration runDuration, String abortCounterName) throws InterruptedException
+    {
+        checks.forEach(Check::reset);
+        long start = System.nanoTime();
+        long end = start + runDuration.toNanos();
+        long grace = start + gracePeriod.toNanos();
+        while (true)
+        {
+            long now = System.nanoTime();
+            if (now - end >= 0)
+                return null;
+            Thread.sleep(Math.min(1000L, TimeUnit.NANOSECONDS.toMillis(end - now) + 1));
+
+            for (Check check : checks)
+            {
+                String violation;
+                try
+                {
+                    violation = check.poll();
+                }
+                catch (Exception e)
+                {
+                    LOG.debug("Error polling live stats of {}", check.nodeArrayId, e);
+                    continue;
+                }
+                if (violation == null || System.nanoTime() - grace < 0)
+                    continue;
+
+                String reason = String.format("%s after %ds", violation, TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start));
+                LOG.warn("  Aborting run: {}", reason);
+                tools.atomicCounter(abortCounterName, 0L).set(1L);
+                return reason;
+            }
+        }
+    }
+
+    private static class Check
+    {
+        private final String nodeArrayId;
+        private final List<Path> nodeRootPaths = new ArrayList<>();
+        private final long[] lastSequences;
+        private final long[] lastErrorCounts;
+        private final long maxP99;
+        private final boolean checkErrors;
+        private final double maxErrorRate;
+        private int p99Violations;
+        private int errorViolations;
+
+        private Check(String nodeArrayId, NodeArray nodeArray, long maxP99, boolean checkErrors, double maxErrorRate)
+        {
+            this.nodeArrayId = nodeArrayId;
+            this.maxP99 = maxP99;
+            this.checkErrors = checkErrors;
+            this.maxErrorRate = maxErrorRate;
+            for (String nodeId : nodeArray.ids())
+            {
+                nodeRootPaths.add(nodeArray.rootPathOf(nodeId));
+            }
+            this.lastSequences = new long[nodeRootPaths.size()];
+            this.lastErrorCounts = new long[nodeRootPaths.size()];
+        }
+
+        private void reset()
+        {
+            // The publishers restart their sequence and error count at every run.
+            Arrays.fill(lastSequences, 0L);
+            Arrays.fill(lastErrorCounts, 0L);
+            p99Violations = 0;
+            errorViolations = 0;
+        }
+
+        private String poll() throws Exception
+        {
+            // Merge the intervals the nodes published since the last poll, so that the p99 is the one of the node array.
+            Histogram merged = null;
+            long deltaErrors = 0L;
+            for (int i = 0; i < nodeRootPaths.size(); i++)
+            {
+                LiveStatsPublisher.Stats stats = LiveStatsPublisher.Stats.read(nodeRootPaths.get(i));
+                if (stats == null || stats.sequence <= lastSequences[i])
+                    continue;
+                lastSequences[i] = stats.sequence;
+                deltaErrors += stats.errorCount - lastErrorCounts[i];
+                lastErrorCounts[i] = stats.errorCount;
+                if (merged == null)
+                    merged = stats.histogram;
+                else
+                    merged.add(stats.histogram);
+            }
+            // No node published a new interval yet.
+            if (merged == null)
+                return null;
+
+            long deltaCount = merged.getTotalCount();
+            long p99 = merged.getValueAtPercentile(99.0);
+            if (LOG.isDebugEnabled())
+                LOG.debug("  live {}: {} req/s, {} err/s, p99 = {} us", nodeArrayId, deltaCount, deltaErrors, TimeUnit.NANOSECONDS.toMicros(p99));
+
+            p99Violations = p99 > maxP99 ? p99Violations + 1 : 0;
+            if (p99Violations >= CONSECUTIVE_VIOLATIONS)
+                return String.format("%s p99 = %d us over max %d us for %d s", nodeArrayId, TimeUnit.NANOSECONDS.toMicros(p99), TimeUnit.NANOSECONDS.toMicros(maxP99), p99Violations);
+
+            if (checkErrors)
+            {
+                double errorRate = deltaCount == 0L ? 0.0 : (double)deltaErrors / deltaCount;
+                errorViolations = errorRate > maxErrorRate ? errorViolations + 1 : 0;
+                if (errorViolations >= CONSECUTIVE_VIOLATIONS)
+                    return String.format("%s error rate = %.2f%% over max %.2f%% for %d s", nodeArrayId, errorRate * 100, maxErrorRate * 100, errorViolations);
+            }
+            return null;
+        }
+    }
+}
@@ -1,17 +1,29 @@
 package org.eclipse.jetty.perf.test;
 
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.time.Duration;
+import java.util.concurrent.TimeUnit;
 
+import org.HdrHistogram.Histogram;
+import org.eclipse.jetty.perf.histogram.HlogSummary;
 import org.eclipse.jetty.perf.util.OutputCapturer;
+import org.eclipse.jetty.perf.util.Payload;
 import org.eclipse.jetty.perf.util.ReportUtil;
 import org.eclipse.jetty.perf.util.SerializableSupplier;
 import org.eclipse.jetty.server.Handler;
 import org.mortbay.jetty.orchestrator.configuration.NodeArrayConfiguration;
 
 import static org.eclipse.jetty.perf.assertions.Assertions.assertHttpClientStatuses;
+import static org.eclipse.jetty.perf.assertions.Assertions.assertLongestThroughputDip;
+import static org.eclipse.jetty.perf.assertions.Assertions.assertMinThroughputRate;
 import static org.eclipse.jetty.perf.assertions.Assertions.assertP99Latency;
 import static org.eclipse.jetty.perf.assertions.Assertions.assertThroughput;
+import static org.eclipse.jetty.perf.assertions.Assertions.assertThroughputCoefficientOfVariation;
+import static org.eclipse.jetty.perf.assertions.Assertions.loadSummaries;
+import static org.eclipse.jetty.perf.assertions.Assertions.loadThroughputTimeline;
 
 public class FlatPerfTest
 {
@@ -29,16 +41,45 @@ public class FlatPerfTest
             NodeArrayConfiguration loadersCfg = params.getClusterConfiguration().nodeArrays().stream().filter(nac -> nac.id().equals("loaders")).findAny().orElseThrow();
             NodeArrayConfiguration probeCfg = params.getClusterConfiguration().nodeArrays().stream().filter(nac -> nac.id().equals("probe")).findAny().orElseThrow();
             int loadersCount = params.getClusterConfiguration().nodeArrays().stream().filter(nac -> nac.id().equals("loaders")).mapToInt(nac -> nac.nodes().size()).sum();
-            long totalLoadersRequestCount = params.getLoaderRate() * loadersCount * runDuration.toSeconds();
+            // Only whole iterations of the resource mix are sent, which can slightly change the rate.
+            long loadersRate = (long)params.getResourceMix().getEffectiveRate(params.getLoaderRate()) * loadersCount;
+            long totalLoadersRequestCount = loadersRate * runDuration.toSeconds();
             long totalProbeRequestCount = params.getProbeRate() * runDuration.toSeconds();
+            long serverRate = loadersRate + params.getProbeRate();
 
             boolean succeeded = true;
 
+            boolean closedLoop = params.getLoadModel() == PerfTestParams.LoadModel.CLOSED;
+
             System.out.println(" Asserting loaders");
             // assert loaders did not get too many HTTP errors
             succeeded &= assertHttpClientStatuses(reportRootPath, loadersCfg, runDuration.toSeconds() * 2); // max 2 errors per second on avg
-            // assert loaders had a given throughput
-            succeeded &= assertThroughput(reportRootPath, loadersCfg, totalLoadersRequestCount, 1);
+            if (closedLoop)
+            {
+                // the throughput of a closed-loop run is an outcome, not a target
+                System.out.printf("  closed-loop throughput with %d users per loader: %.1f req/s%n", params.getLoaderConcurrency(), loadThroughputTimeline(reportRootPath, loadersCfg).getMeanRate());
+            }
+            else
+            {
+                // assert loaders had a given throughput
+                succeeded &= assertThroughput(reportRootPath, loadersCfg, totalLoadersRequestCount, 1);
+                // assert loaders never stalled
+                if (params.getMinThroughputRatio() > 0.0)
+                    succeeded &= assertMinThroughputRate(reportRootPath, loadersCfg, (long)(loadersRate * params.getMinThroughputRatio()));
+            }
+
+            if (params.getPayload() != null)
+            {
+                Payload payload = params.getPayload();
+                double rate = loadThroughputTimeline(reportRootPath, loadersCfg).getMeanRate();
+                double bytesRate = rate * payload.getSize();
+                System.out.printf("  loaders throughput: %.1f req/s, %.1f MB/s of %s responses%n", rate, bytesRate / 1_000_000.0, payload);
+                try (PrintWriter pw = new PrintWriter(reportRootPath.resolve("payload-throughput.csv").toFile(), StandardCharsets.UTF_8))
+                {
+                    pw.println("payload_size,payload_source,req_per_s,bytes_per_s");
+                    pw.printf("%d,%s,%.1f,%.1f%n", payload.getSize(), payload.getSource(), rate, bytesRate);
+                }
+            }
 
             System.out.println(" Asserting probe");
             // assert probe did not get too many HTTP errors
@@ -47,14 +88,48 @@ public class FlatPerfTest
             succeeded &= assertThroughput(reportRootPath, probeCfg, totalProbeRequestCount, 1);
             // assert probe had a given max latency
             succeeded &= assertP99Latency(reportRootPath, probeCfg, params.getExpectedP99ProbeLatency(), params.getExpectedP99ErrorMargin(), 2);
+            // assert probe had a given max latency as seen by users, i.e.: including the time waiting for a connection
+            if (params.isCorrectedLatencyAssertion())
+                succeeded &= assertP99Latency(reportRootPath, probeCfg, "perf-corrected.hlog", params.getExpectedP99ProbeLatency(), params.getExpectedP99ErrorMargin(), 2);
 
             System.out.println(" Asserting server");
-            // assert server had a given throughput
-            succeeded &= assertThroughput(reportRootPath, serverCfg, totalLoadersRequestCount + totalProbeRequestCount, 1);
+            if (!closedLoop)
+            {
+                // assert server had a given throughput
+                succeeded &= assertThroughput(reportRootPath, serverCfg, totalLoadersRequestCount + totalProbeRequestCount, 1);
+                // assert server throughput was stable over the whole run
+                if (params.getMinThroughputRatio() > 0.0)
+                    succeeded &= assertMinThroughputRate(reportRootPath, serverCfg, (long)(serverRate * params.getMinThroughputRatio()));
+            }
+            if (params.getMaxThroughputDipSeconds() >= 0)
+                succeeded &= assertLongestThroughputDip(reportRootPath, serverCfg, params.getMaxThroughputDipSeconds());
+            if (params.getMaxThroughputCoefficientOfVariation() > 0.0)
+                succeeded &= assertThroughputCoefficientOfVariation(reportRootPath, serverCfg, params.getMaxThroughputCoefficientOfVariation());
             // assert server had a given max latency
             succeeded &= assertP99Latency(reportRootPath, serverCfg, params.getExpectedP99ServerLatency(), params.getExpectedP99ErrorMargin(), 2);
 
+            if (params.getConnectionChurn() > 0 && params.getProtocol().isSecure())
+            {
+                System.out.println(" TLS handshakes");
+                printHandshakeStats(reportRootPath, loadersCfg, runDuration);
+                printHandshakeStats(reportRootPath, serverCfg, runDuration);
+            }
+
             return succeeded;
         }
     }
+
+    private static void printHandshakeStats(Path reportRootPath, NodeArrayConfiguration nodeArray, Duration runDuration) throws IOException
+    {
+        Histogram histogram = new Histogram(3);
+        for (HlogSummary summary : loadSummaries(reportRootPath, nodeArray, "perf-tls-handshake.hlog"))
+        {
+            histogram.add(summary.getTotalHistogram());
+        }
+        System.out.printf("  %s: %.1f handshakes/s, p50 = %d us, p99 = %d us, max = %d us%n", nodeArray.id(),
+            (double)histogram.getTotalCount() / runDuration.toSeconds(),
+            TimeUnit.NANOSECONDS.toMicros(histogram.getValueAtPercentile(50.0)),
+            TimeUnit.NANOSECONDS.toMicros(histogram.getValueAtPercentile(99.0)),
+            TimeUnit.NANOSECONDS.toMicros(histogram.getMaxValue()));
+    }
 }
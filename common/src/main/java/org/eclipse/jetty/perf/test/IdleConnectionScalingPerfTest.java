@@ -0,0 +1,145 @@
+package org.eclipse.jetty.perf.test;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+import org.eclipse.jetty.perf.util.SerializableSupplier;
+import org.eclipse.jetty.server.Handler;
+import org.mortbay.jetty.orchestrator.configuration.NodeArrayConfiguration;
+
+import static org.eclipse.jetty.perf.assertions.Assertions.loadServerResourceSamples;
+
+/**
+ * Measures how the server scales with the number of idle connections: for each point of the sweep,
+ * the loaders park that many keep-alive connections on the server while the probe measures the latency.
+ * The memory cost of a connection is computed against the first point of the sweep.
+ */
+public class IdleConnectionScalingPerfTest
+{
+    /**
+     * @param idleConnectionsPerLoader the points of the sweep, in ascending order, ideally starting with 0 as a baseline
+     * @return the probe p99 latency in microseconds of each point of the sweep
+     */
+    public static long[] runSweep(String testName, PerfTestParams params, Duration warmupDuration, Duration runDuration, int[] idleConnectionsPerLoader, SerializableSupplier<Handler> testedHandlerSupplier) throws Exception
+    {
+        List<Integer> points = Arrays.stream(idleConnectionsPerLoader).boxed().toList();
+        List<SweepPerfTest.Result<Integer, Columns>> results = SweepPerfTest.runSweep(testName, params, warmupDuration, runDuration, new IdleConnectionSweep(), points, testedHandlerSupplier);
+        return results.stream().mapToLong(SweepPerfTest.Result::getProbeP99).toArray();
+    }
+
+    private static class IdleConnectionSweep implements SweepPerfTest.Sweep<Integer, Columns>
+    {
+        @Override
+        public String getTitle()
+        {
+            return "Idle connections";
+        }
+
+        @Override
+        public String getCsvFilename()
+        {
+            return "idle-connections.csv";
+        }
+
+        @Override
+        public String getCsvHeader()
+        {
+            return "idle_connections_per_loader,server_connections,heap_after_gc,direct_used,heap_per_connection,direct_per_connection,process_cpu_pct,selector_cpu_pct";
+        }
+
+        @Override
+        public String getTableHeader()
+        {
+            return String.format("%11s %12s %11s %13s %13s %14s", "idle/loader", "server conns", "heap B/conn", "direct B/conn", "process CPU %", "selector CPU %");
+        }
+
+        @Override
+        public String getPointName(Integer idleConnections)
+        {
+            return "idle-" + idleConnections;
+        }
+
+        @Override
+        public PerfTestParams configure(PerfTestParams params, Integer idleConnections)
+        {
+            return params.withIdleConnections(idleConnections);
+        }
+
+        @Override
+        public Columns evaluate(Integer idleConnections, Path pointReportPath, NodeArrayConfiguration serverCfg, Duration runDuration, List<SweepPerfTest.Result<Integer, Columns>> previousResults) throws IOException
+        {
+            long samples = 0L;
+            long serverConnections = 0L;
+            long heapAfterGc = 0L;
+            long directUsed = 0L;
+            long processCpuMs = 0L;
+            long selectorCpuMs = 0L;
+            for (long[] values : loadServerResourceSamples(pointReportPath, serverCfg))
+            {
+                // second,connections,heap_used,heap_after_gc,direct_used,process_cpu_ms,selector_cpu_ms
+                samples++;
+                serverConnections = Math.max(serverConnections, values[1]);
+                heapAfterGc += values[3];
+                directUsed += values[4];
+                processCpuMs += values[5];
+                selectorCpuMs += values[6];
+            }
+            heapAfterGc /= samples;
+            directUsed /= samples;
+            // CPU usage is expressed in percents of a single core.
+            double processCpuPercent = processCpuMs * 100.0 / (samples * 1000L);
+            double selectorCpuPercent = selectorCpuMs * 100.0 / (samples * 1000L);
+
+            long heapPerConnection = 0L;
+            long directPerConnection = 0L;
+            Columns baseline = previousResults.isEmpty() ? null : previousResults.get(0).getColumns();
+            if (baseline != null && serverConnections > baseline.serverConnections)
+            {
+                long extraConnections = serverConnections - baseline.serverConnections;
+                heapPerConnection = (heapAfterGc - baseline.heapAfterGc) / extraConnections;
+                directPerConnection = (directUsed - baseline.directUsed) / extraConnections;
+            }
+            return new Columns(idleConnections, serverConnections, heapAfterGc, directUsed, heapPerConnection, directPerConnection, processCpuPercent, selectorCpuPercent);
+        }
+    }
+
+    private static class Columns implements SweepPerfTest.Columns
+    {
+        private final int idleConnections;
+        private final long serverConnections;
+        private final long heapAfterGc;
+        private final long directUsed;
+        private final long heapPerConnection;
+        private final long directPerConnection;
+        private final double processCpuPercent;
+        private final double selectorCpuPercent;
+
+        private Columns(int idleConnections, long serverConnections, long heapAfterGc, long directUsed, long heapPerConnection, long directPerConnection, double processCpuPercent, double selectorCpuPercent)
+        {
+            this.idleConnections = idleConnections;
+            this.serverConnections = serverConnections;
+            this.heapAfterGc = heapAfterGc;
+            this.directUsed = directUsed;
+            this.heapPerConnection = heapPerConnection;
+            this.directPerConnection = directPerConnection;
+            this.processCpuPercent = processCpuPercent;
+            this.selectorCpuPercent = selectorCpuPercent;
+        }
+
+        @Override
+        public String toCsv()
+        {
+            return String.format("%d,%d,%d,%d,%d,%d,%.2f,%.2f", idleConnections, serverConnections, heapAfterGc, directUsed,
+                heapPerConnection, directPerConnection, processCpuPercent, selectorCpuPercent);
+        }
+
+        @Override
+        public String toTable()
+        {
+            return String.format("%11d %12d %11d %13d %13.1f %14.1f", idleConnections, serverConnections, heapPerConnection, directPerConnection, processCpuPercent, selectorCpuPercent);
+        }
+    }
+}
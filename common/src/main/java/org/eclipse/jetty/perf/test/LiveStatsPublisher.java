@@ -0,0 +1,124 @@
+package org.eclipse.jetty.perf.test;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.LongSupplier;
+import java.util.zip.Deflater;
+
+import org.HdrHistogram.Histogram;
+import org.eclipse.jetty.perf.util.LatencyRecorder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Publishes each interval histogram of a node to the test driver, together with the cumulative error count,
+ * so that the driver can merge the histograms of all the nodes of a node array.
+ * The latest interval is written to the {@link #FILENAME} file of the node's root folder, which the driver reads
+ * through the node's root path like it downloads the artifacts. The file is written from a dedicated thread,
+ * so that the timer writing the intervals of the histogram log is never delayed.
+ * @see EarlyAbortMonitor
+ */
+class LiveStatsPublisher implements Closeable
+{
+    static final String FILENAME = ".live-stats";
+
+    private static final Logger LOG = LoggerFactory.getLogger(LiveStatsPublisher.class);
+    private static final String TMP_FILENAME = FILENAME + ".tmp";
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable ->
+    {
+        Thread thread = new Thread(runnable, "live-stats-publisher");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final LatencyRecorder latencyRecorder;
+    private final LongSupplier errorCountSupplier;
+    private long sequence;
+
+    LiveStatsPublisher(LatencyRecorder latencyRecorder, LongSupplier errorCountSupplier) throws IOException
+    {
+        this.latencyRecorder = latencyRecorder;
+        this.errorCountSupplier = errorCountSupplier;
+        // The file outlives the publisher when the cluster is reused for several runs.
+        Files.deleteIfExists(Paths.get(FILENAME));
+        latencyRecorder.setIntervalListener(this::onInterval);
+    }
+
+    private void onInterval(Histogram intervalHistogram)
+    {
+        // The interval histogram is recycled by the recorder.
+        Histogram copy = intervalHistogram.copy();
+        long errorCount = errorCountSupplier.getAsLong();
+        executor.execute(() -> publish(copy, errorCount));
+    }
+
+    private void publish(Histogram histogram, long errorCount)
+    {
+        try
+        {
+            ByteBuffer buffer = ByteBuffer.allocate(histogram.getNeededByteBufferCapacity());
+            int length = histogram.encodeIntoCompressedByteBuffer(buffer, Deflater.BEST_SPEED);
+            String encoded = Base64.getEncoder().encodeToString(Arrays.copyOf(buffer.array(), length));
+            Path tmp = Paths.get(TMP_FILENAME);
+            Files.write(tmp, List.of(Long.toString(++sequence), Long.toString(errorCount), encoded), StandardCharsets.US_ASCII);
+            // The driver must never read a partially written file.
+            Files.move(tmp, Paths.get(FILENAME), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (Exception e)
+        {
+            // Never let publishing disturb the recording.
+            LOG.debug("Error publishing live stats", e);
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        latencyRecorder.setIntervalListener(null);
+        executor.shutdown();
+    }
+
+    /**
+     * The content of a live stats file, as read by the driver.
+     */
+    static class Stats
+    {
+        final long sequence;
+        final long errorCount;
+        final Histogram histogram;
+
+        private Stats(long sequence, long errorCount, Histogram histogram)
+        {
+            this.sequence = sequence;
+            this.errorCount = errorCount;
+            this.histogram = histogram;
+        }
+
+        /**
+         * @return the latest stats published by the node with the given root path, or null if none was published yet
+         */
+        static Stats read(Path nodeRootPath) throws Exception
+        {
+            Path file = nodeRootPath.resolve(FILENAME);
+            if (!Files.exists(file))
+                return null;
+            List<String> lines = Files.readAllLines(file, StandardCharsets.US_ASCII);
+            if (lines.size() < 3)
+                return null;
+            ByteBuffer buffer = ByteBuffer.wrap(Base64.getDecoder().decode(lines.get(2)));
+            Histogram histogram = Histogram.decodeFromCompressedByteBuffer(buffer, 0L);
+            return new Stats(Long.parseLong(lines.get(0)), Long.parseLong(lines.get(1)), histogram);
+        }
+    }
+}
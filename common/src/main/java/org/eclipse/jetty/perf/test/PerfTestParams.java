@@ -2,14 +2,21 @@ package org.eclipse.jetty.perf.test;
 
 import java.io.Serializable;
 import java.net.URI;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 
 import org.eclipse.jetty.perf.jdk.LocalJdk;
+import org.eclipse.jetty.perf.loader.ClosedLoopLoadGenerator;
+import org.eclipse.jetty.perf.loader.ResourceMix;
 import org.eclipse.jetty.perf.monitoring.ConfigurableMonitor;
+import org.eclipse.jetty.perf.monitoring.asyncprof.AsyncProfilerMonitor;
+import org.eclipse.jetty.perf.monitoring.jfr.JfrMonitor;
+import org.eclipse.jetty.perf.util.Payload;
 import org.mortbay.jetty.orchestrator.configuration.ClusterConfiguration;
 import org.mortbay.jetty.orchestrator.configuration.Jvm;
 import org.mortbay.jetty.orchestrator.configuration.Node;
@@ -21,13 +28,31 @@ public class PerfTestParams implements Serializable
 {
     private static final String JDK_TO_USE = System.getProperty("test.jdk.name", "load-jdk17");
     private static final String OPTIONAL_MONITORED_ITEMS = System.getProperty("test.optional.monitored.items", "");
+    private static final boolean SERVER_PHASE_RECORDING = Boolean.getBoolean("test.server.phase.recording");
+    private static final boolean SERVER_PARTITIONED_RECORDING = Boolean.getBoolean("test.server.partitioned.recording");
+    private static final int SERVER_PARTITIONED_MAX_ROUTES = Integer.getInteger("test.server.partitioned.max.routes", 16);
+    private static final boolean CORRECTED_LATENCY_ASSERTION = Boolean.getBoolean("test.corrected.latency.assertion");
+    private static final boolean EARLY_ABORT = Boolean.getBoolean("test.early.abort");
+    private static final Duration EARLY_ABORT_GRACE_PERIOD = Duration.ofSeconds(Long.getLong("test.early.abort.grace.seconds", 10L));
+    private static final double EARLY_ABORT_P99_FACTOR = Double.parseDouble(System.getProperty("test.early.abort.p99.factor", "10.0"));
+    private static final double EARLY_ABORT_MAX_ERROR_RATE = Double.parseDouble(System.getProperty("test.early.abort.max.error.rate", "0.05"));
+    private static final String RESOURCE_MIX = System.getProperty("test.resource.mix", "");
+    private static final boolean SERVER_VIRTUAL_THREADS = Boolean.getBoolean("test.server.virtual.threads");
+    // The throughput stability assertions are disabled unless their threshold is configured.
+    private static final double MIN_THROUGHPUT_RATIO = Double.parseDouble(System.getProperty("test.min.throughput.ratio", "0"));
+    private static final int MAX_THROUGHPUT_DIP_SECONDS = Integer.getInteger("test.max.throughput.dip.seconds", -1);
+    private static final double MAX_THROUGHPUT_CV = Double.parseDouble(System.getProperty("test.max.throughput.cv", "0"));
+    private static final int DEFAULT_ACCEPTORS = 4;
+    private static final int DEFAULT_SELECTORS = 24;
+    // The QueuedThreadPool defaults.
+    private static final int DEFAULT_MIN_THREADS = 8;
+    private static final int DEFAULT_MAX_THREADS = 200;
+    private static final int DEFAULT_RESERVED_THREADS = -1;
 
     private static final EnumSet<ConfigurableMonitor.Item> DEFAULT_MONITORED_ITEMS = EnumSet.of(
-        ConfigurableMonitor.Item.CMDLINE_CPU,
-        ConfigurableMonitor.Item.CMDLINE_MEMORY,
-        ConfigurableMonitor.Item.CMDLINE_NETWORK,
-        ConfigurableMonitor.Item.CMDLINE_DISK,
-        ConfigurableMonitor.Item.JHICCUP
+        ConfigurableMonitor.Item.PROCFS,
+        ConfigurableMonitor.Item.JHICCUP,
+        ConfigurableMonitor.Item.GC_EVENTS
     );
 
     private static final EnumSet<ConfigurableMonitor.Item> MONITORED_ITEMS = EnumSet.copyOf(new HashSet<ConfigurableMonitor.Item>() // javac needs HashSet to be typed
@@ -60,6 +85,7 @@ public class PerfTestParams implements Serializable
         https(true, HttpVersion.HTTP11),
         h2c(false, HttpVersion.HTTP2),
         h2(true, HttpVersion.HTTP2),
+        h3(true, HttpVersion.HTTP3),
         ;
 
         private final boolean secure;
@@ -84,26 +110,102 @@ public class PerfTestParams implements Serializable
 
     public enum HttpVersion
     {
-        HTTP11, HTTP2
+        HTTP11, HTTP2, HTTP3
+    }
+
+    public enum LoadModel
+    {
+        /**
+         * The loaders send requests at a fixed rate, regardless of how fast the server responds.
+         */
+        OPEN,
+        /**
+         * The loaders have a fixed number of users, each sending a request only after having
+         * received the previous response and waited for a think time.
+         */
+        CLOSED
     }
 
     private final Protocol protocol;
+    private final LoadModel loadModel;
     private final int loaderRate;
     private final int loaderThreads;
     private final long expectedP99ServerLatency;
     private final long expectedP99ProbeLatency;
     private final double expectedP99ErrorMargin;
+    private final int loaderConcurrency;
+    private final ClosedLoopLoadGenerator.ThinkTime thinkTime;
+    private final Duration meanThinkTime;
+    // Optional settings, only changed on copies by the with*() methods.
+    private ResourceMix resourceMix = RESOURCE_MIX.isEmpty() ? null : ResourceMix.parse(RESOURCE_MIX);
+    private Payload payload;
+    private int connectionChurn;
+    private int idleConnections;
+    private boolean serverResourceRecording;
+    private boolean serverVirtualThreads = SERVER_VIRTUAL_THREADS;
+    private int acceptors = DEFAULT_ACCEPTORS;
+    private int selectors = DEFAULT_SELECTORS;
+    private int connectors = 1;
+    private int serverMinThreads = DEFAULT_MIN_THREADS;
+    private int serverMaxThreads = DEFAULT_MAX_THREADS;
+    private int serverReservedThreads = DEFAULT_RESERVED_THREADS;
+    private EnumSet<ConfigurableMonitor.Item> monitoredItems = MONITORED_ITEMS;
+    private double minThroughputRatio = MIN_THROUGHPUT_RATIO;
+    private int maxThroughputDipSeconds = MAX_THROUGHPUT_DIP_SECONDS;
+    private double maxThroughputCoefficientOfVariation = MAX_THROUGHPUT_CV;
 
     public PerfTestParams(Protocol protocol, int loaderRate, int loaderThreads, long expectedP99ServerLatency, long expectedP99ProbeLatency, double expectedP99ErrorMargin)
+    {
+        this(protocol, LoadModel.OPEN, loaderRate, loaderThreads, 0, ClosedLoopLoadGenerator.ThinkTime.NONE, Duration.ZERO, expectedP99ServerLatency, expectedP99ProbeLatency, expectedP99ErrorMargin);
+    }
+
+    /**
+     * Parameters of a closed-loop run.
+     * @param loaderConcurrency the number of users of each loader
+     * @param thinkTime the distribution of the time each user waits between a response and its next request
+     * @param meanThinkTime the mean of the think time distribution
+     */
+    public PerfTestParams(Protocol protocol, int loaderConcurrency, ClosedLoopLoadGenerator.ThinkTime thinkTime, Duration meanThinkTime, long expectedP99ServerLatency, long expectedP99ProbeLatency, double expectedP99ErrorMargin)
+    {
+        this(protocol, LoadModel.CLOSED, 0, 1, loaderConcurrency, thinkTime, meanThinkTime, expectedP99ServerLatency, expectedP99ProbeLatency, expectedP99ErrorMargin);
+    }
+
+    private PerfTestParams(Protocol protocol, LoadModel loadModel, int loaderRate, int loaderThreads, int loaderConcurrency, ClosedLoopLoadGenerator.ThinkTime thinkTime, Duration meanThinkTime, long expectedP99ServerLatency, long expectedP99ProbeLatency, double expectedP99ErrorMargin)
     {
         this.protocol = protocol;
+        this.loadModel = loadModel;
         this.loaderRate = loaderRate;
         this.loaderThreads = loaderThreads;
+        this.loaderConcurrency = loaderConcurrency;
+        this.thinkTime = thinkTime;
+        this.meanThinkTime = meanThinkTime;
         this.expectedP99ServerLatency = expectedP99ServerLatency;
         this.expectedP99ProbeLatency = expectedP99ProbeLatency;
         this.expectedP99ErrorMargin = expectedP99ErrorMargin;
     }
 
+    private PerfTestParams copy()
+    {
+        PerfTestParams copy = new PerfTestParams(protocol, loadModel, loaderRate, loaderThreads, loaderConcurrency, thinkTime, meanThinkTime, expectedP99ServerLatency, expectedP99ProbeLatency, expectedP99ErrorMargin);
+        copy.resourceMix = resourceMix;
+        copy.payload = payload;
+        copy.connectionChurn = connectionChurn;
+        copy.idleConnections = idleConnections;
+        copy.serverResourceRecording = serverResourceRecording;
+        copy.serverVirtualThreads = serverVirtualThreads;
+        copy.acceptors = acceptors;
+        copy.selectors = selectors;
+        copy.connectors = connectors;
+        copy.serverMinThreads = serverMinThreads;
+        copy.serverMaxThreads = serverMaxThreads;
+        copy.serverReservedThreads = serverReservedThreads;
+        copy.monitoredItems = monitoredItems;
+        copy.minThroughputRatio = minThroughputRatio;
+        copy.maxThroughputDipSeconds = maxThroughputDipSeconds;
+        copy.maxThroughputCoefficientOfVariation = maxThroughputCoefficientOfVariation;
+        return copy;
+    }
+
     public Protocol getProtocol()
     {
         return protocol;
@@ -140,7 +242,338 @@ public class PerfTestParams implements Serializable
 
     public EnumSet<ConfigurableMonitor.Item> getMonitoredItems()
     {
-        return MONITORED_ITEMS;
+        return monitoredItems;
+    }
+
+    /**
+     * @return a copy of these parameters where the given item is monitored on top of the configured ones
+     */
+    public PerfTestParams withMonitoredItem(ConfigurableMonitor.Item item)
+    {
+        PerfTestParams copy = copy();
+        copy.monitoredItems = EnumSet.copyOf(monitoredItems);
+        copy.monitoredItems.add(item);
+        return copy;
+    }
+
+    /**
+     * @param minThroughputRatio the ratio of the expected rate under which no interval may fall, or 0 to not assert it
+     * @param maxThroughputDipSeconds the longest tolerated run of intervals under {@link org.eclipse.jetty.perf.histogram.ThroughputTimeline#DIP_RATIO}
+     * of the mean rate, or -1 to not assert it
+     * @param maxThroughputCoefficientOfVariation the max coefficient of variation of the per-second rate, or 0 to not assert it
+     * @return a copy of these parameters asserting the stability of the throughput with the given thresholds
+     */
+    public PerfTestParams withThroughputStability(double minThroughputRatio, int maxThroughputDipSeconds, double maxThroughputCoefficientOfVariation)
+    {
+        PerfTestParams copy = copy();
+        copy.minThroughputRatio = minThroughputRatio;
+        copy.maxThroughputDipSeconds = maxThroughputDipSeconds;
+        copy.maxThroughputCoefficientOfVariation = maxThroughputCoefficientOfVariation;
+        return copy;
+    }
+
+    public double getMinThroughputRatio()
+    {
+        return minThroughputRatio;
+    }
+
+    public int getMaxThroughputDipSeconds()
+    {
+        return maxThroughputDipSeconds;
+    }
+
+    public double getMaxThroughputCoefficientOfVariation()
+    {
+        return maxThroughputCoefficientOfVariation;
+    }
+
+    public boolean isServerPhaseRecording()
+    {
+        return SERVER_PHASE_RECORDING;
+    }
+
+    /**
+     * @return whether the server also records its latencies per route and status class
+     */
+    public boolean isServerPartitionedRecording()
+    {
+        return SERVER_PARTITIONED_RECORDING;
+    }
+
+    /**
+     * @return the max number of routes the server records its latencies for, including the one of the routes over the cap
+     */
+    public int getServerPartitionedMaxRoutes()
+    {
+        return SERVER_PARTITIONED_MAX_ROUTES;
+    }
+
+    /**
+     * @return whether the p99 latency of the probe is also asserted from the intended send time of the requests,
+     * i.e.: corrected for coordinated omission
+     */
+    public boolean isCorrectedLatencyAssertion()
+    {
+        return CORRECTED_LATENCY_ASSERTION;
+    }
+
+    public boolean isEarlyAbort()
+    {
+        return EARLY_ABORT;
+    }
+
+    /**
+     * @return how long the run must have been going on before it can be aborted early
+     */
+    public Duration getEarlyAbortGracePeriod()
+    {
+        return EARLY_ABORT_GRACE_PERIOD;
+    }
+
+    /**
+     * @return the factor by which the per-second p99 must exceed its expected value to abort the run
+     */
+    public double getEarlyAbortP99Factor()
+    {
+        return EARLY_ABORT_P99_FACTOR;
+    }
+
+    /**
+     * @return the ratio of failed requests over which the run is aborted
+     */
+    public double getEarlyAbortMaxErrorRate()
+    {
+        return EARLY_ABORT_MAX_ERROR_RATE;
+    }
+
+    public LoadModel getLoadModel()
+    {
+        return loadModel;
+    }
+
+    public int getLoaderConcurrency()
+    {
+        return loaderConcurrency;
+    }
+
+    public ClosedLoopLoadGenerator.ThinkTime getThinkTime()
+    {
+        return thinkTime;
+    }
+
+    public Duration getMeanThinkTime()
+    {
+        return meanThinkTime;
+    }
+
+    /**
+     * @return a copy of these parameters where the loaders send the given mix of requests
+     */
+    public PerfTestParams withResourceMix(ResourceMix resourceMix)
+    {
+        PerfTestParams copy = copy();
+        copy.resourceMix = resourceMix;
+        return copy;
+    }
+
+    /**
+     * @return a copy of these parameters recording that the loaders' requests are answered with the given payload,
+     * which is used to report the throughput in bytes/s
+     */
+    public PerfTestParams withPayload(Payload payload)
+    {
+        PerfTestParams copy = copy();
+        copy.payload = payload;
+        return copy;
+    }
+
+    /**
+     * @return the payload of the responses to the loaders' requests, or null if it is not known
+     */
+    public Payload getPayload()
+    {
+        return payload;
+    }
+
+    /**
+     * @param requestsPerConnection the number of requests after which the loaders close their connection
+     * and open a new one, 1 meaning a new connection for every request
+     * @return a copy of these parameters where the loaders churn their connections
+     */
+    public PerfTestParams withConnectionChurn(int requestsPerConnection)
+    {
+        if (requestsPerConnection < 1)
+            throw new IllegalArgumentException("Invalid number of requests per connection: " + requestsPerConnection);
+        // HTTP/2 and HTTP/3 multiplex the requests, so there is no sequence of requests per connection.
+        if (protocol.getVersion() != HttpVersion.HTTP11)
+            throw new IllegalArgumentException("Connection churn is only supported with HTTP/1.1, not " + protocol);
+        PerfTestParams copy = copy();
+        copy.connectionChurn = requestsPerConnection;
+        return copy;
+    }
+
+    /**
+     * @return the number of requests after which the loaders open a new connection, or 0 if they keep their connections
+     */
+    public int getConnectionChurn()
+    {
+        return connectionChurn;
+    }
+
+    /**
+     * @param idleConnectionsPerLoader the number of connections each loader opens before the run and then leaves idle
+     * @return a copy of these parameters where the loaders park idle connections on the server,
+     * and the server records its resource usage, even when there are 0 idle connections to get a baseline
+     */
+    public PerfTestParams withIdleConnections(int idleConnectionsPerLoader)
+    {
+        if (idleConnectionsPerLoader < 0)
+            throw new IllegalArgumentException("Invalid number of idle connections: " + idleConnectionsPerLoader);
+        PerfTestParams copy = copy();
+        copy.idleConnections = idleConnectionsPerLoader;
+        copy.serverResourceRecording = true;
+        return copy;
+    }
+
+    /**
+     * @return the number of idle connections each loader parks on the server, 0 by default
+     */
+    public int getIdleConnections()
+    {
+        return idleConnections;
+    }
+
+    /**
+     * @return true if the server samples its heap, direct memory and CPU usage every second
+     */
+    public boolean isServerResourceRecording()
+    {
+        return serverResourceRecording;
+    }
+
+    /**
+     * @return the feature version of the JDK the nodes run with, parsed from the first number of the {@code test.jdk.name} property,
+     * i.e.: 17 for {@code load-jdk17}, or 0 if the name has no number
+     */
+    public static int getJdkFeatureVersion()
+    {
+        int start = 0;
+        while (start < JDK_TO_USE.length() && !Character.isDigit(JDK_TO_USE.charAt(start)))
+        {
+            start++;
+        }
+        int end = start;
+        while (end < JDK_TO_USE.length() && Character.isDigit(JDK_TO_USE.charAt(end)))
+        {
+            end++;
+        }
+        return start == end ? 0 : Integer.parseInt(JDK_TO_USE.substring(start, end));
+    }
+
+    /**
+     * @return true if the JDK the nodes run with supports virtual threads, meant to be used with {@code @EnabledIf}
+     */
+    public static boolean isVirtualThreadsSupported()
+    {
+        return getJdkFeatureVersion() >= 21;
+    }
+
+    /**
+     * @param serverVirtualThreads true to make the server run the blocking tasks, i.e.: the handlers that block, on virtual threads;
+     * this requires the JDK to support them, see {@link #isVirtualThreadsSupported()}
+     * @return a copy of these parameters with the given server threading mode
+     */
+    public PerfTestParams withServerVirtualThreads(boolean serverVirtualThreads)
+    {
+        PerfTestParams copy = copy();
+        copy.serverVirtualThreads = serverVirtualThreads;
+        return copy;
+    }
+
+    /**
+     * @return true if the server runs the blocking tasks on virtual threads, false if on its platform threads
+     */
+    public boolean isServerVirtualThreads()
+    {
+        return serverVirtualThreads;
+    }
+
+    /**
+     * @param acceptors the number of acceptor threads of each connector
+     * @param selectors the number of selectors of each connector
+     * @param connectors the number of connectors listening on the server port with SO_REUSEPORT
+     * @return a copy of these parameters with the given server connector topology, where the server records its resource usage
+     */
+    public PerfTestParams withConnectorTopology(int acceptors, int selectors, int connectors)
+    {
+        if (protocol.getVersion() == HttpVersion.HTTP3)
+            throw new IllegalArgumentException("The connector topology cannot be configured for " + protocol);
+        if (acceptors < 0 || selectors < 1 || connectors < 1)
+            throw new IllegalArgumentException("Invalid connector topology: " + acceptors + " acceptors, " + selectors + " selectors, " + connectors + " connectors");
+        PerfTestParams copy = copy();
+        copy.acceptors = acceptors;
+        copy.selectors = selectors;
+        copy.connectors = connectors;
+        copy.serverResourceRecording = true;
+        return copy;
+    }
+
+    public int getAcceptors()
+    {
+        return acceptors;
+    }
+
+    public int getSelectors()
+    {
+        return selectors;
+    }
+
+    public int getConnectors()
+    {
+        return connectors;
+    }
+
+    /**
+     * The selectors hand the I/O tasks over to the thread pool with an adaptive strategy: execute-produce-consume
+     * when a reserved thread is available to take over the selection, produce-execute-consume otherwise.
+     * @param minThreads the min number of threads of the server thread pool
+     * @param maxThreads the max number of threads of the server thread pool
+     * @param reservedThreads the number of reserved threads, -1 for a heuristic based on the number of cores,
+     * and 0 to force produce-execute-consume
+     * @return a copy of these parameters with the given server thread pool configuration
+     */
+    public PerfTestParams withServerThreadPool(int minThreads, int maxThreads, int reservedThreads)
+    {
+        if (minThreads < 0 || maxThreads < minThreads || reservedThreads < -1 || reservedThreads >= maxThreads)
+            throw new IllegalArgumentException("Invalid thread pool configuration: " + minThreads + " min threads, " + maxThreads + " max threads, " + reservedThreads + " reserved threads");
+        PerfTestParams copy = copy();
+        copy.serverMinThreads = minThreads;
+        copy.serverMaxThreads = maxThreads;
+        copy.serverReservedThreads = reservedThreads;
+        return copy;
+    }
+
+    public int getServerMinThreads()
+    {
+        return serverMinThreads;
+    }
+
+    public int getServerMaxThreads()
+    {
+        return serverMaxThreads;
+    }
+
+    public int getServerReservedThreads()
+    {
+        return serverReservedThreads;
+    }
+
+    /**
+     * @return the mix of requests sent by the loaders, by default a single GET of the server URI
+     */
+    public ResourceMix getResourceMix()
+    {
+        return resourceMix != null ? resourceMix : ResourceMix.of(getServerUri().getPath());
     }
 
     public int getLoaderRate()
@@ -178,7 +611,26 @@ public class PerfTestParams implements Serializable
     @Override
     public String toString()
     {
-        return protocol.name();
+        StringBuilder sb = new StringBuilder(protocol.name());
+        if (loadModel == LoadModel.CLOSED)
+        {
+            sb.append("_closed_").append(loaderConcurrency);
+            if (thinkTime != ClosedLoopLoadGenerator.ThinkTime.NONE)
+                sb.append("_").append(thinkTime.name().toLowerCase(Locale.ROOT)).append("_").append(meanThinkTime.toMillis()).append("ms");
+        }
+        if (payload != null)
+            sb.append("_").append(payload);
+        if (connectionChurn > 0)
+            sb.append("_churn_").append(connectionChurn);
+        if (idleConnections > 0)
+            sb.append("_idle_").append(idleConnections);
+        if (serverVirtualThreads)
+            sb.append("_vthreads");
+        if (acceptors != DEFAULT_ACCEPTORS || selectors != DEFAULT_SELECTORS || connectors != 1)
+            sb.append("_topology_").append(acceptors).append("x").append(selectors).append("x").append(connectors);
+        if (serverMinThreads != DEFAULT_MIN_THREADS || serverMaxThreads != DEFAULT_MAX_THREADS || serverReservedThreads != DEFAULT_RESERVED_THREADS)
+            sb.append("_qtp_").append(serverMinThreads).append("-").append(serverMaxThreads).append("_reserved_").append(serverReservedThreads);
+        return sb.toString();
     }
 
     private static String[] defaultJvmOpts(String... extra)
@@ -196,9 +648,15 @@ public class PerfTestParams implements Serializable
             MONITORED_ITEMS.contains(ConfigurableMonitor.Item.ASYNC_PROF_CACHE_MISSES))
         {
             result.addAll(List.of("-XX:+UnlockDiagnosticVMOptions", "-XX:+DebugNonSafepoints"));
+            String asyncProfilerLib = System.getProperty(AsyncProfilerMonitor.LIB_PROPERTY);
+            if (asyncProfilerLib != null)
+                result.add("-D" + AsyncProfilerMonitor.LIB_PROPERTY + "=" + asyncProfilerLib);
             if (JDK_TO_USE.contains("21"))
                 result.add("-XX:+EnableDynamicAgentLoading"); // JDK 21 needs this flag to disable a warning when async prof is used
         }
+        String slowRequestThreshold = System.getProperty(JfrMonitor.SLOW_REQUEST_THRESHOLD_PROPERTY);
+        if (MONITORED_ITEMS.contains(ConfigurableMonitor.Item.JFR) && slowRequestThreshold != null)
+            result.add("-D" + JfrMonitor.SLOW_REQUEST_THRESHOLD_PROPERTY + "=" + slowRequestThreshold);
         result.addAll(List.of(extra));
         return result.toArray(new String[0]);
     }
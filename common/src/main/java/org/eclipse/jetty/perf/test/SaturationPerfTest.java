@@ -0,0 +1,160 @@
+package org.eclipse.jetty.perf.test;
+
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.HdrHistogram.Histogram;
+import org.eclipse.jetty.perf.histogram.HlogSummary;
+import org.eclipse.jetty.perf.util.ArtifactDownloader.Artifact;
+import org.eclipse.jetty.perf.util.OutputCapturer;
+import org.eclipse.jetty.perf.util.ReportUtil;
+import org.eclipse.jetty.perf.util.SerializableSupplier;
+import org.eclipse.jetty.server.Handler;
+import org.mortbay.jetty.orchestrator.configuration.NodeArrayConfiguration;
+
+import static org.eclipse.jetty.perf.assertions.Assertions.loadHttpClientErrors;
+import static org.eclipse.jetty.perf.assertions.Assertions.loadSummaries;
+import static org.eclipse.jetty.perf.assertions.Assertions.loadThroughputTimeline;
+
+/**
+ * Searches for the highest loader rate the server can sustain while meeting a p99 and error rate SLO.
+ * The rate is doubled from {@code minRate} until a short sub-run misses the SLO or {@code maxRate} is reached,
+ * then the range between the last successful rate and the first failed one is binary-searched.
+ * All sub-runs execute on the same cluster, whose JVMs stay alive between the steps.
+ */
+public class SaturationPerfTest
+{
+    // A step is only evaluated from the latencies and the statuses.
+    private static final EnumSet<Artifact> STEP_ARTIFACTS = EnumSet.of(Artifact.HISTOGRAMS, Artifact.STATUSES);
+
+    /**
+     * @param sloP99 the max p99 latency of the probe, in microseconds
+     * @param sloMaxErrorRate the max ratio of the loaders' requests that are allowed to fail
+     * @param precision the search stops when the range between the failed and successful rates is at most that ratio of the successful rate
+     * @return the highest loader rate per loader node that met the SLO, or 0 if even {@code minRate} did not
+     */
+    public static int runSearch(String testName, PerfTestParams params, Duration warmupDuration, Duration stepDuration, int minRate, int maxRate, double precision, long sloP99, double sloMaxErrorRate, SerializableSupplier<Handler> testedHandlerSupplier) throws Exception
+    {
+        Path reportRootPath = ReportUtil.createReportRootPath(testName, params.toString());
+        try (OutputCapturer ignore = new OutputCapturer(reportRootPath))
+        {
+            NodeArrayConfiguration loadersCfg = params.getClusterConfiguration().nodeArrays().stream().filter(nac -> nac.id().equals("loaders")).findAny().orElseThrow();
+            NodeArrayConfiguration probeCfg = params.getClusterConfiguration().nodeArrays().stream().filter(nac -> nac.id().equals("probe")).findAny().orElseThrow();
+            int loadersCount = loadersCfg.nodes().size();
+
+            List<Step> steps = new ArrayList<>();
+            int passed = 0;
+            int failed = -1;
+            try (ClusteredPerfTest clusteredPerfTest = new ClusteredPerfTest(testName, params, warmupDuration, stepDuration, testedHandlerSupplier, reportRootPath))
+            {
+                int rate = minRate;
+                while (true)
+                {
+                    Path stepReportPath = reportRootPath.resolve("rate-" + rate);
+                    Files.createDirectories(stepReportPath);
+                    String abortReason = clusteredPerfTest.execute(rate, warmupDuration, stepDuration, stepReportPath, STEP_ARTIFACTS);
+                    Step step = evaluate(stepReportPath, loadersCfg, probeCfg, rate, params.getResourceMix().getEffectiveRate(rate) * loadersCount, abortReason, sloP99, sloMaxErrorRate);
+                    steps.add(step);
+                    System.out.println(step);
+
+                    if (step.passed)
+                        passed = rate;
+                    else if (failed == -1 || rate < failed)
+                        failed = rate;
+
+                    // There is nothing to search under minRate.
+                    if (failed == minRate)
+                        break;
+
+                    if (failed == -1)
+                    {
+                        if (rate >= maxRate)
+                            break;
+                        rate = (int)Math.min(maxRate, rate * 2L);
+                    }
+                    else
+                    {
+                        if (failed - passed <= Math.max(1, (int)(passed * precision)))
+                            break;
+                        rate = passed + (failed - passed) / 2;
+                    }
+                }
+            }
+
+            try (PrintWriter pw = new PrintWriter(reportRootPath.resolve("saturation.csv").toFile(), StandardCharsets.UTF_8))
+            {
+                pw.println("loader_rate,achieved_rate,probe_p99_us,error_rate,passed,abort_reason");
+                for (Step step : steps)
+                {
+                    pw.printf("%d,%.1f,%d,%.6f,%b,%s%n", step.rate, step.achievedRate, step.probeP99, step.errorRate, step.passed, step.abortReason == null ? "" : step.abortReason.replace(',', ';'));
+                }
+            }
+            System.out.println(" Max sustainable loader rate: " + passed + " req/s per loader, " + (long)passed * loadersCount + " req/s in total" +
+                " (p99 <= " + sloP99 + " us, error rate <= " + (sloMaxErrorRate * 100) + "%)");
+            return passed;
+        }
+    }
+
+    /**
+     * @param expectedRate the rate of all the loaders together, as actually sent for the given loader rate
+     */
+    private static Step evaluate(Path stepReportPath, NodeArrayConfiguration loadersCfg, NodeArrayConfiguration probeCfg, int rate, long expectedRate, String abortReason, long sloP99, double sloMaxErrorRate) throws Exception
+    {
+        double achievedRate = loadThroughputTimeline(stepReportPath, loadersCfg).getMeanRate();
+        long totalCount = 0L;
+        Histogram probeHistogram = new Histogram(3);
+        for (HlogSummary summary : loadSummaries(stepReportPath, probeCfg, "perf.hlog"))
+        {
+            probeHistogram.add(summary.getTotalHistogram());
+        }
+        for (HlogSummary summary : loadSummaries(stepReportPath, loadersCfg, "perf.hlog"))
+        {
+            totalCount += summary.getTotalCount();
+        }
+        long errors = loadHttpClientErrors(stepReportPath, loadersCfg).stream().mapToLong(Map.Entry::getKey).sum();
+        long probeP99 = TimeUnit.NANOSECONDS.toMicros(probeHistogram.getValueAtPercentile(99.0));
+        double errorRate = totalCount == 0L ? 1.0 : Math.min(1.0, (double)errors / totalCount);
+
+        // The loaders must also have kept up with the requested rate, otherwise the server was already saturated.
+        boolean passed = abortReason == null &&
+            probeP99 <= sloP99 &&
+            errorRate <= sloMaxErrorRate &&
+            achievedRate >= expectedRate * 0.95;
+        return new Step(rate, achievedRate, probeP99, errorRate, passed, abortReason);
+    }
+
+    private static class Step
+    {
+        private final int rate;
+        private final double achievedRate;
+        private final long probeP99;
+        private final double errorRate;
+        private final boolean passed;
+        private final String abortReason;
+
+        private Step(int rate, double achievedRate, long probeP99, double errorRate, boolean passed, String abortReason)
+        {
+            this.rate = rate;
+            this.achievedRate = achievedRate;
+            this.probeP99 = probeP99;
+            this.errorRate = errorRate;
+            this.passed = passed;
+            this.abortReason = abortReason;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("  %s; loader rate %d req/s, achieved %.1f req/s, probe p99 = %d us, error rate = %.3f%%%s",
+                passed ? "OK" : "NOK", rate, achievedRate, probeP99, errorRate * 100, abortReason == null ? "" : ", aborted: " + abortReason);
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package org.eclipse.jetty.perf.test;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+
+import org.eclipse.jetty.perf.util.ArtifactDownloader.Artifact;
+import org.eclipse.jetty.perf.util.OutputCapturer;
+import org.eclipse.jetty.perf.util.ReportUtil;
+import org.eclipse.jetty.perf.util.SerializableSupplier;
+import org.eclipse.jetty.server.Handler;
+import org.mortbay.jetty.orchestrator.configuration.NodeArrayConfiguration;
+
+import static org.eclipse.jetty.perf.assertions.Assertions.loadThroughputTimeline;
+import static org.eclipse.jetty.perf.assertions.Assertions.loadTotalP99;
+
+/**
+ * Runs the same workload once per point of a sweep, each point changing some of the parameters, then compares
+ * the points in a CSV file and a table that have the server throughput and p99 latency, the probe p99 latency
+ * and the columns specific to the sweep.
+ * Every point runs on a fresh cluster so that the JIT and heap state of a point does not leak into the next one.
+ */
+public class SweepPerfTest
+{
+    // The sweeps read the latencies and the resource usage, i.e.: server-resources.csv and os/perf-stat.log.
+    private static final EnumSet<Artifact> POINT_ARTIFACTS = EnumSet.of(Artifact.HISTOGRAMS, Artifact.STATUSES, Artifact.CSVS, Artifact.OS_MONITORS);
+
+    /**
+     * What a sweep changes at each point and what it measures on top of the latencies.
+     * @param <P> the type of the points
+     * @param <C> the type of the sweep-specific columns of a point
+     */
+    public interface Sweep<P, C extends Columns>
+    {
+        /**
+         * @return the title of the table, i.e.: {@code Thread pools}
+         */
+        String getTitle();
+
+        /**
+         * @return the name of the CSV file written in the report root folder
+         */
+        String getCsvFilename();
+
+        /**
+         * @return the comma-separated names of the sweep-specific CSV columns
+         */
+        String getCsvHeader();
+
+        /**
+         * @return the names of the sweep-specific table columns, formatted like {@link Columns#toTable()}
+         */
+        String getTableHeader();
+
+        /**
+         * @return the name of the report folder of the point
+         */
+        String getPointName(P point);
+
+        /**
+         * @return the parameters to run the point with
+         */
+        PerfTestParams configure(PerfTestParams params, P point);
+
+        /**
+         * @param previousResults the results of the points that already ran, in sweep order
+         * @return the sweep-specific columns of the point, read from its report
+         */
+        C evaluate(P point, Path pointReportPath, NodeArrayConfiguration serverCfg, Duration runDuration, List<Result<P, C>> previousResults) throws IOException;
+    }
+
+    public interface Columns
+    {
+        /**
+         * @return the comma-separated values of the sweep-specific CSV columns
+         */
+        String toCsv();
+
+        /**
+         * @return the values of the sweep-specific table columns
+         */
+        String toTable();
+    }
+
+    public static class Result<P, C extends Columns>
+    {
+        private final P point;
+        private final C columns;
+        private final double serverRate;
+        private final long serverP99;
+        private final long probeP99;
+        private final String abortReason;
+
+        private Result(P point, C columns, double serverRate, long serverP99, long probeP99, String abortReason)
+        {
+            this.point = point;
+            this.columns = columns;
+            this.serverRate = serverRate;
+            this.serverP99 = serverP99;
+            this.probeP99 = probeP99;
+            this.abortReason = abortReason;
+        }
+
+        public P getPoint()
+        {
+            return point;
+        }
+
+        public C getColumns()
+        {
+            return columns;
+        }
+
+        public double getServerRate()
+        {
+            return serverRate;
+        }
+
+        public long getServerP99()
+        {
+            return serverP99;
+        }
+
+        public long getProbeP99()
+        {
+            return probeP99;
+        }
+
+        /**
+         * @return the reason why the point was aborted early, or null if it ran for its whole duration
+         */
+        public String getAbortReason()
+        {
+            return abortReason;
+        }
+    }
+
+    /**
+     * @return the results of the points, in sweep order
+     */
+    public static <P, C extends Columns> List<Result<P, C>> runSweep(String testName, PerfTestParams params, Duration warmupDuration, Duration runDuration, Sweep<P, C> sweep, List<P> points, SerializableSupplier<Handler> testedHandlerSupplier) throws Exception
+    {
+        Path reportRootPath = ReportUtil.createReportRootPath(testName, params.toString());
+        try (OutputCapturer ignore = new OutputCapturer(reportRootPath))
+        {
+            NodeArrayConfiguration serverCfg = params.getClusterConfiguration().nodeArrays().stream().filter(nac -> nac.id().equals("server")).findAny().orElseThrow();
+            NodeArrayConfiguration probeCfg = params.getClusterConfiguration().nodeArrays().stream().filter(nac -> nac.id().equals("probe")).findAny().orElseThrow();
+
+            List<Result<P, C>> results = new ArrayList<>();
+            for (P point : points)
+            {
+                PerfTestParams pointParams = sweep.configure(params, point);
+                Path pointReportPath = reportRootPath.resolve(sweep.getPointName(point));
+                Files.createDirectories(pointReportPath);
+                String abortReason;
+                try (ClusteredPerfTest clusteredPerfTest = new ClusteredPerfTest(testName, pointParams, warmupDuration, runDuration, testedHandlerSupplier, pointReportPath))
+                {
+                    abortReason = clusteredPerfTest.execute(pointParams.getLoaderRate(), warmupDuration, runDuration, pointReportPath, POINT_ARTIFACTS);
+                }
+                C columns = sweep.evaluate(point, pointReportPath, serverCfg, runDuration, results);
+                double serverRate = loadThroughputTimeline(pointReportPath, serverCfg).getMeanRate();
+                long serverP99 = loadTotalP99(pointReportPath, serverCfg);
+                long probeP99 = loadTotalP99(pointReportPath, probeCfg);
+                results.add(new Result<>(point, columns, serverRate, serverP99, probeP99, abortReason));
+            }
+
+            int best = 0;
+            for (int i = 1; i < results.size(); i++)
+            {
+                if (results.get(i).abortReason == null && (results.get(best).abortReason != null || results.get(i).serverP99 < results.get(best).serverP99))
+                    best = i;
+            }
+
+            try (PrintWriter pw = new PrintWriter(reportRootPath.resolve(sweep.getCsvFilename()).toFile(), StandardCharsets.UTF_8))
+            {
+                pw.println(sweep.getCsvHeader() + ",server_rate,server_p99_us,probe_p99_us,abort_reason");
+                for (Result<P, C> result : results)
+                {
+                    pw.printf("%s,%.1f,%d,%d,%s%n", result.columns.toCsv(), result.serverRate, result.serverP99, result.probeP99,
+                        result.abortReason == null ? "" : result.abortReason.replace(',', ';'));
+                }
+            }
+
+            System.out.println(" " + sweep.getTitle());
+            System.out.printf("  %s %12s %14s %13s%n", sweep.getTableHeader(), "server req/s", "server p99 us", "probe p99 us");
+            for (int i = 0; i < results.size(); i++)
+            {
+                Result<P, C> result = results.get(i);
+                System.out.printf("  %s %12.1f %14d %13d%s%s%n", result.columns.toTable(), result.serverRate, result.serverP99, result.probeP99,
+                    i == best ? " <- lowest server p99" : "", result.abortReason == null ? "" : " aborted: " + result.abortReason);
+            }
+            return results;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package org.eclipse.jetty.perf.test;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import org.eclipse.jetty.perf.monitoring.ConfigurableMonitor;
+import org.eclipse.jetty.perf.util.SerializableSupplier;
+import org.eclipse.jetty.server.Handler;
+import org.mortbay.jetty.orchestrator.configuration.NodeArrayConfiguration;
+
+import static org.eclipse.jetty.perf.assertions.Assertions.loadPerfStatCount;
+
+/**
+ * Runs the same workload against a matrix of server thread pool configurations, i.e.: min, max and reserved threads,
+ * and compares their latency and the number of context switches counted by linux perf on the server.
+ */
+public class ThreadPoolTuningPerfTest
+{
+    /**
+     * @param threadPools the points of the sweep, each one being an array of min, max and reserved threads
+     * @return true if no point of the sweep was aborted early
+     */
+    public static boolean runSweep(String testName, PerfTestParams params, Duration warmupDuration, Duration runDuration, int[][] threadPools, SerializableSupplier<Handler> testedHandlerSupplier) throws Exception
+    {
+        List<SweepPerfTest.Result<int[], Columns>> results = SweepPerfTest.runSweep(testName, params, warmupDuration, runDuration, new ThreadPoolSweep(), List.of(threadPools), testedHandlerSupplier);
+        return results.stream().allMatch(result -> result.getAbortReason() == null);
+    }
+
+    private static class ThreadPoolSweep implements SweepPerfTest.Sweep<int[], Columns>
+    {
+        @Override
+        public String getTitle()
+        {
+            return "Thread pools";
+        }
+
+        @Override
+        public String getCsvFilename()
+        {
+            return "thread-pool.csv";
+        }
+
+        @Override
+        public String getCsvHeader()
+        {
+            return "min_threads,max_threads,reserved_threads,server_context_switches_per_s,server_cpu_migrations_per_s";
+        }
+
+        @Override
+        public String getTableHeader()
+        {
+            return String.format("%7s %7s %8s %10s %12s", "min", "max", "reserved", "ctx sw/s", "cpu migr/s");
+        }
+
+        @Override
+        public String getPointName(int[] threadPool)
+        {
+            return "qtp-" + threadPool[0] + "-" + threadPool[1] + "-reserved-" + threadPool[2];
+        }
+
+        @Override
+        public PerfTestParams configure(PerfTestParams params, int[] threadPool)
+        {
+            // The context switches are counted by linux perf.
+            return params.withServerThreadPool(threadPool[0], threadPool[1], threadPool[2])
+                .withMonitoredItem(ConfigurableMonitor.Item.PERF_STAT);
+        }
+
+        @Override
+        public Columns evaluate(int[] threadPool, Path pointReportPath, NodeArrayConfiguration serverCfg, Duration runDuration, List<SweepPerfTest.Result<int[], Columns>> previousResults) throws IOException
+        {
+            // -1 when perf could not count them, i.e.: because of the kernel's perf_event_paranoid setting.
+            long contextSwitches = loadPerfStatCount(pointReportPath, serverCfg, "context-switches");
+            long cpuMigrations = loadPerfStatCount(pointReportPath, serverCfg, "cpu-migrations");
+            long seconds = runDuration.toSeconds();
+            return new Columns(threadPool, contextSwitches < 0L ? -1L : contextSwitches / seconds, cpuMigrations < 0L ? -1L : cpuMigrations / seconds);
+        }
+    }
+
+    private static class Columns implements SweepPerfTest.Columns
+    {
+        private final int[] threadPool;
+        private final long contextSwitchesPerSecond;
+        private final long cpuMigrationsPerSecond;
+
+        private Columns(int[] threadPool, long contextSwitchesPerSecond, long cpuMigrationsPerSecond)
+        {
+            this.threadPool = threadPool;
+            this.contextSwitchesPerSecond = contextSwitchesPerSecond;
+            this.cpuMigrationsPerSecond = cpuMigrationsPerSecond;
+        }
+
+        @Override
+        public String toCsv()
+        {
+            return String.format("%d,%d,%d,%d,%d", threadPool[0], threadPool[1], threadPool[2], contextSwitchesPerSecond, cpuMigrationsPerSecond);
+        }
+
+        @Override
+        public String toTable()
+        {
+            return String.format("%7d %7d %8d %10d %12d", threadPool[0], threadPool[1], threadPool[2], contextSwitchesPerSecond, cpuMigrationsPerSecond);
+        }
+    }
+}
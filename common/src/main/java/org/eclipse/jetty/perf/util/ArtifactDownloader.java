@@ -0,0 +1,257 @@
+package org.eclipse.jetty.perf.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.kamranzafar.jtar.TarEntry;
+import org.kamranzafar.jtar.TarInputStream;
+import org.kamranzafar.jtar.TarOutputStream;
+import org.mortbay.jetty.orchestrator.NodeArray;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Downloads the artifacts of the nodes of node arrays, all nodes in parallel.
+ * Each node first lists its artifacts with their size and modification time; the files that are already
+ * present locally with the same size and modification time are skipped, and the others are sent as a
+ * single tar.gz archive built on the node, then extracted locally with their modification time.
+ * Listing does not read the files, so that multi-GB profiles and histogram logs are only read to be archived.
+ */
+public class ArtifactDownloader
+{
+    private static final Logger LOG = LoggerFactory.getLogger(ArtifactDownloader.class);
+    private static final String MANIFEST_FILENAME = ".artifacts.manifest";
+    private static final String ARCHIVE_FILENAME = ".artifacts.tar.gz";
+
+    /**
+     * The kinds of artifacts produced by the nodes, as globs relative to the nodes' root folder.
+     */
+    public enum Artifact
+    {
+        HISTOGRAMS("glob:*.hlog"),
+        STATUSES("glob:http-client-*.log"),
+        OS_MONITORS("glob:os/**"),
+        PROFILES("glob:{async-profiler-*,*.jfr}"),
+        GC_LOGS("glob:{gc.log*,gc-*}"),
+        CSVS("glob:*.csv"),
+        ALL("glob:**"),
+        ;
+
+        private final String pattern;
+
+        Artifact(String pattern)
+        {
+            this.pattern = pattern;
+        }
+
+        public String getPattern()
+        {
+            return pattern;
+        }
+    }
+
+    /**
+     * Download the artifacts matching the given patterns of all the nodes of all the given node arrays in parallel.
+     * @param nodeArrays the node arrays to download from
+     * @param targets the local folder to download each of the node arrays to
+     * @param patterns {@link java.nio.file.FileSystem#getPathMatcher(String)} patterns relative to the nodes' root folder
+     */
+    public static void download(List<NodeArray> nodeArrays, List<Path> targets, List<String> patterns) throws IOException
+    {
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try
+        {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < nodeArrays.size(); i++)
+            {
+                NodeArray nodeArray = nodeArrays.get(i);
+                Path targetFolder = targets.get(i);
+                for (String id : nodeArray.ids())
+                {
+                    futures.add(executor.submit(() ->
+                    {
+                        downloadNode(nodeArray, id, targetFolder.resolve(id), patterns);
+                        return null;
+                    }));
+                }
+            }
+            IOException failure = null;
+            for (Future<?> future : futures)
+            {
+                try
+                {
+                    future.get();
+                }
+                catch (Exception e)
+                {
+                    if (failure == null)
+                        failure = new IOException("Error downloading artifacts", e);
+                    else
+                        failure.addSuppressed(e);
+                }
+            }
+            if (failure != null)
+                throw failure;
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void downloadNode(NodeArray nodeArray, String id, Path destinationDir, List<String> patterns) throws Exception
+    {
+        Files.createDirectories(destinationDir);
+        Path nodeRootPath = nodeArray.rootPathOf(id);
+
+        nodeArray.executeOn(id, tools -> writeManifest(patterns)).get(120, TimeUnit.SECONDS);
+        List<ManifestEntry> manifest = new ArrayList<>();
+        for (String line : Files.readAllLines(nodeRootPath.resolve(MANIFEST_FILENAME), StandardCharsets.UTF_8))
+        {
+            if (!line.isBlank())
+                manifest.add(ManifestEntry.parse(line));
+        }
+
+        ArrayList<String> needed = new ArrayList<>();
+        for (ManifestEntry entry : manifest)
+        {
+            Path local = destinationDir.resolve(entry.path);
+            if (Files.isRegularFile(local) && Files.size(local) == entry.size && Files.getLastModifiedTime(local).to(TimeUnit.SECONDS) == entry.modificationTime)
+                continue;
+            needed.add(entry.path);
+        }
+        LOG.debug("Node {} has {} artifact(s), {} to download", id, manifest.size(), needed.size());
+        try
+        {
+            if (needed.isEmpty())
+                return;
+
+            nodeArray.executeOn(id, tools -> writeArchive(needed)).get(600, TimeUnit.SECONDS);
+            Path remoteArchive = nodeRootPath.resolve(ARCHIVE_FILENAME);
+            Path localArchive = Files.createTempFile(destinationDir.getParent(), id, ".tar.gz");
+            try
+            {
+                try (InputStream is = Files.newInputStream(remoteArchive); OutputStream os = Files.newOutputStream(localArchive))
+                {
+                    IOUtil.copy(is, os, 64 * 1024, false);
+                }
+                unTarGz(localArchive, destinationDir);
+            }
+            finally
+            {
+                Files.deleteIfExists(localArchive);
+            }
+        }
+        finally
+        {
+            nodeArray.executeOn(id, tools -> cleanUp()).get(120, TimeUnit.SECONDS);
+        }
+    }
+
+    // Runs on the node.
+    private static void writeManifest(List<String> patterns) throws IOException
+    {
+        Path root = Paths.get("");
+        List<PathMatcher> matchers = patterns.stream().map(FileSystems.getDefault()::getPathMatcher).toList();
+        List<String> lines = new ArrayList<>();
+        try (Stream<Path> stream = Files.walk(root))
+        {
+            for (Path path : (Iterable<Path>)stream::iterator)
+            {
+                Path relative = root.relativize(path);
+                String name = relative.toString();
+                if (!Files.isRegularFile(path) || name.equals(MANIFEST_FILENAME) || name.equals(ARCHIVE_FILENAME))
+                    continue;
+                if (matchers.stream().noneMatch(matcher -> matcher.matches(relative)))
+                    continue;
+                // The tar entries only keep the modification time in seconds.
+                lines.add(new ManifestEntry(Files.size(path), Files.getLastModifiedTime(path).to(TimeUnit.SECONDS), name.replace('\\', '/')).toString());
+            }
+        }
+        Files.write(root.resolve(MANIFEST_FILENAME), lines, StandardCharsets.UTF_8);
+    }
+
+    // Runs on the node.
+    private static void writeArchive(Collection<String> paths) throws IOException
+    {
+        try (TarOutputStream tos = new TarOutputStream(new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(Paths.get(ARCHIVE_FILENAME)), 64 * 1024))))
+        {
+            for (String path : paths)
+            {
+                Path file = Paths.get(path);
+                tos.putNextEntry(new TarEntry(file.toFile(), path));
+                try (InputStream is = Files.newInputStream(file))
+                {
+                    IOUtil.copy(is, tos, 64 * 1024, false);
+                }
+            }
+        }
+    }
+
+    // Runs on the node.
+    private static void cleanUp() throws IOException
+    {
+        Files.deleteIfExists(Paths.get(MANIFEST_FILENAME));
+        Files.deleteIfExists(Paths.get(ARCHIVE_FILENAME));
+    }
+
+    private static void unTarGz(Path tarGzFile, Path targetFolder) throws IOException
+    {
+        try (TarInputStream tis = new TarInputStream(new GZIPInputStream(new BufferedInputStream(Files.newInputStream(tarGzFile)))))
+        {
+            while (true)
+            {
+                TarEntry entry = tis.getNextEntry();
+                if (entry == null)
+                    break;
+                if (entry.isDirectory())
+                    continue;
+
+                Path file = targetFolder.resolve(entry.getName()).normalize();
+                if (!file.startsWith(targetFolder))
+                    throw new IOException("Invalid archive entry: " + entry.getName());
+                Files.createDirectories(file.getParent());
+                try (OutputStream os = Files.newOutputStream(file))
+                {
+                    IOUtil.copy(tis, os, 64 * 1024, false);
+                }
+                Files.setLastModifiedTime(file, FileTime.from(entry.getModTime().toInstant()));
+            }
+        }
+    }
+
+    private record ManifestEntry(long size, long modificationTime, String path)
+    {
+        private static ManifestEntry parse(String line)
+        {
+            String[] parts = line.split(" ", 3);
+            return new ManifestEntry(Long.parseLong(parts[0]), Long.parseLong(parts[1]), parts[2]);
+        }
+
+        @Override
+        public String toString()
+        {
+            return size + " " + modificationTime + " " + path;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package org.eclipse.jetty.perf.util;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jetty.io.Connection;
+import org.eclipse.jetty.io.SelectableChannelEndPoint;
+
+/**
+ * Counts the connections opened and closed by a connector it is added to as a bean,
+ * and writes the per-second accept and close rates and the number of open connections to a CSV file.
+ * The lifetime of the connections is also recorded into a {@link LatencyRecorder}.
+ */
+public class ConnectionStatsRecorder implements Connection.Listener, Recorder
+{
+    private final Timer timer = new Timer();
+    private final LongAdder opened = new LongAdder();
+    private final LongAdder closed = new LongAdder();
+    private final PrintWriter printWriter;
+    private final LatencyRecorder lifetimeRecorder;
+    private long writtenOpened;
+    private long writtenClosed;
+    private long second;
+    private volatile boolean record;
+    private boolean stopped;
+
+    public ConnectionStatsRecorder(String csvFilename, LatencyRecorder lifetimeRecorder) throws IOException
+    {
+        this.printWriter = new PrintWriter(csvFilename, StandardCharsets.UTF_8);
+        this.lifetimeRecorder = lifetimeRecorder;
+    }
+
+    @Override
+    public void startRecording()
+    {
+        lifetimeRecorder.startRecording();
+        writtenOpened = opened.sum();
+        writtenClosed = closed.sum();
+        printWriter.println("second,accepts,closes,open");
+        record = true;
+        timer.schedule(new TimerTask()
+        {
+            @Override
+            public void run()
+            {
+                writeStats();
+            }
+        }, 1000, 1000);
+    }
+
+    @Override
+    public synchronized void stopRecording()
+    {
+        if (stopped)
+            return;
+        stopped = true;
+        record = false;
+        timer.cancel();
+        printWriter.close();
+        lifetimeRecorder.stopRecording();
+    }
+
+    private synchronized void writeStats()
+    {
+        if (!record)
+            return;
+        long totalOpened = opened.sum();
+        long totalClosed = closed.sum();
+        printWriter.print(second++);
+        printWriter.print(',');
+        printWriter.print(totalOpened - writtenOpened);
+        printWriter.print(',');
+        printWriter.print(totalClosed - writtenClosed);
+        printWriter.print(',');
+        printWriter.println(totalOpened - totalClosed);
+        printWriter.flush();
+        writtenOpened = totalOpened;
+        writtenClosed = totalClosed;
+    }
+
+    @Override
+    public void onOpened(Connection connection)
+    {
+        if (isNetworkConnection(connection))
+            opened.increment();
+    }
+
+    @Override
+    public void onClosed(Connection connection)
+    {
+        if (!isNetworkConnection(connection))
+            return;
+        closed.increment();
+        if (record)
+            lifetimeRecorder.recordValue(TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis() - connection.getCreatedTimeStamp()));
+    }
+
+    private static boolean isNetworkConnection(Connection connection)
+    {
+        // Only count the connections directly on top of the network, i.e.: not the HTTP connections on top of TLS ones.
+        return connection.getEndPoint() instanceof SelectableChannelEndPoint;
+    }
+}
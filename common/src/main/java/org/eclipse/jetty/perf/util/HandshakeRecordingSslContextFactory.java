@@ -0,0 +1,57 @@
+package org.eclipse.jetty.perf.util;
+
+import javax.net.ssl.SSLEngine;
+
+import org.eclipse.jetty.util.ssl.SslContextFactory;
+
+/**
+ * {@link SslContextFactory} implementations that record the duration of the TLS handshake
+ * of every engine they create into a {@link LatencyRecorder}.
+ */
+public class HandshakeRecordingSslContextFactory
+{
+    public static class Server extends SslContextFactory.Server
+    {
+        private final LatencyRecorder recorder;
+
+        public Server(LatencyRecorder recorder)
+        {
+            this.recorder = recorder;
+        }
+
+        @Override
+        public SSLEngine newSSLEngine()
+        {
+            return new HandshakeTimingSSLEngine(super.newSSLEngine(), recorder::recordValue);
+        }
+
+        @Override
+        public SSLEngine newSSLEngine(String host, int port)
+        {
+            return new HandshakeTimingSSLEngine(super.newSSLEngine(host, port), recorder::recordValue);
+        }
+    }
+
+    public static class Client extends SslContextFactory.Client
+    {
+        private final LatencyRecorder recorder;
+
+        public Client(boolean trustAll, LatencyRecorder recorder)
+        {
+            super(trustAll);
+            this.recorder = recorder;
+        }
+
+        @Override
+        public SSLEngine newSSLEngine()
+        {
+            return new HandshakeTimingSSLEngine(super.newSSLEngine(), recorder::recordValue);
+        }
+
+        @Override
+        public SSLEngine newSSLEngine(String host, int port)
+        {
+            return new HandshakeTimingSSLEngine(super.newSSLEngine(host, port), recorder::recordValue);
+        }
+    }
+}
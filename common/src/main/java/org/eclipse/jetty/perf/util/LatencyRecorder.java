@@ -4,20 +4,34 @@ import java.io.Closeable;
 import java.io.FileNotFoundException;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.function.Consumer;
 
 import org.HdrHistogram.Histogram;
 import org.HdrHistogram.HistogramLogWriter;
 import org.HdrHistogram.Recorder;
 import org.eclipse.jetty.util.component.AbstractLifeCycle;
 import org.eclipse.jetty.util.component.LifeCycle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class LatencyRecorder implements org.eclipse.jetty.perf.util.Recorder
 {
+    private static final Logger LOG = LoggerFactory.getLogger(LatencyRecorder.class);
+
     private final HistogramLogRecorder recorder;
 
     public LatencyRecorder(String histogramFilename) throws FileNotFoundException
     {
-        this.recorder = new HistogramLogRecorder(histogramFilename, 3, 1000);
+        this(histogramFilename, null);
+    }
+
+    /**
+     * @param timer the timer writing the interval histograms, shared with other recorders and cancelled by its owner,
+     * or null for the recorder to have its own
+     */
+    public LatencyRecorder(String histogramFilename, Timer timer) throws FileNotFoundException
+    {
+        this.recorder = new HistogramLogRecorder(histogramFilename, 3, 1000, timer);
     }
 
     @Override
@@ -48,6 +62,15 @@ public class LatencyRecorder implements org.eclipse.jetty.perf.util.Recorder
         recorder.recordValue(value);
     }
 
+    /**
+     * Set a listener notified with each interval histogram written while recording.
+     * The histogram instance is recycled, so the listener must not keep a reference to it.
+     */
+    public void setIntervalListener(Consumer<Histogram> listener)
+    {
+        recorder.intervalListener = listener;
+    }
+
     private static class HistogramLogRecorder implements Closeable
     {
         private enum State
@@ -56,27 +79,44 @@ public class LatencyRecorder implements org.eclipse.jetty.perf.util.Recorder
         }
 
         private final Recorder recorder;
-        private final Timer timer = new Timer();
+        private final Timer timer;
+        private final boolean ownTimer;
+        private final TimerTask timerTask;
         private final HistogramLogWriter writer;
         private volatile State state = State.NOT_RECORDING;
+        private volatile Consumer<Histogram> intervalListener;
 
-        public HistogramLogRecorder(String histogramFilename, int numberOfSignificantValueDigits, int intervalInMs) throws FileNotFoundException
+        public HistogramLogRecorder(String histogramFilename, int numberOfSignificantValueDigits, int intervalInMs, Timer timer) throws FileNotFoundException
         {
             this.recorder = new Recorder(numberOfSignificantValueDigits);
             this.writer = new HistogramLogWriter(histogramFilename);
-            timer.schedule(new TimerTask()
+            this.ownTimer = timer == null;
+            this.timer = ownTimer ? new Timer() : timer;
+            this.timerTask = new TimerTask()
             {
                 private Histogram intervalHistogram;
                 @Override
                 public void run()
                 {
-                    intervalHistogram = recorder.getIntervalHistogram(intervalHistogram);
-                    if (state == State.RECORDING)
+                    // An exception escaping this method would silently kill the timer thread.
+                    try
+                    {
+                        intervalHistogram = recorder.getIntervalHistogram(intervalHistogram);
+                        if (state == State.RECORDING)
+                        {
+                            writer.outputIntervalHistogram(intervalHistogram);
+                            Consumer<Histogram> listener = intervalListener;
+                            if (listener != null)
+                                listener.accept(intervalHistogram);
+                        }
+                    }
+                    catch (Throwable x)
                     {
-                        writer.outputIntervalHistogram(intervalHistogram);
+                        LOG.warn("Error writing the interval histogram to {}", histogramFilename, x);
                     }
                 }
-            }, intervalInMs, intervalInMs);
+            };
+            this.timer.schedule(timerTask, intervalInMs, intervalInMs);
         }
 
         public void startRecording()
@@ -98,7 +138,9 @@ public class LatencyRecorder implements org.eclipse.jetty.perf.util.Recorder
                 return;
             state = State.CLOSED;
 
-            timer.cancel();
+            timerTask.cancel();
+            if (ownTimer)
+                timer.cancel();
             writer.close();
         }
 
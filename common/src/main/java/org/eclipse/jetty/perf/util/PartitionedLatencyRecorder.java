@@ -0,0 +1,151 @@
+package org.eclipse.jetty.perf.util;
+
+import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Timer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Records latencies in a separate histogram log per route and per status class, failed requests
+ * having their own partition. The number of routes is capped: once the cap is reached, values of new routes are
+ * recorded in the {@link #OVERFLOW_ROUTE} partition.
+ * All the partitions write their interval histograms from a single timer thread.
+ * Files are named {@code <prefix>-<route>-<status class>.hlog}, e.g.: {@code perf-root-2xx.hlog},
+ * and are only created once a value is recorded in them while recording.
+ */
+public class PartitionedLatencyRecorder implements Recorder
+{
+    private static final Logger LOG = LoggerFactory.getLogger(PartitionedLatencyRecorder.class);
+
+    public static final String OVERFLOW_ROUTE = "_overflow";
+    private static final String[] PARTITIONS = {"xxx", "1xx", "2xx", "3xx", "4xx", "5xx", "failed"};
+    private static final int FAILED = PARTITIONS.length - 1;
+    // Marks a partition whose file could not be created.
+    private static final Object DISABLED = new Object();
+
+    private enum State
+    {
+        NOT_RECORDING, RECORDING, CLOSED
+    }
+
+    private final ConcurrentMap<String, AtomicReferenceArray<Object>> partitions = new ConcurrentHashMap<>();
+    private final AtomicReferenceArray<Object> overflowPartitions = new AtomicReferenceArray<>(PARTITIONS.length);
+    private final List<LatencyRecorder> recorders = new ArrayList<>();
+    private final Timer timer = new Timer();
+    private final String filenamePrefix;
+    private final int maxRoutes;
+    private volatile State state = State.NOT_RECORDING;
+
+    public PartitionedLatencyRecorder(String filenamePrefix, int maxRoutes)
+    {
+        this.filenamePrefix = filenamePrefix;
+        this.maxRoutes = maxRoutes;
+    }
+
+    @Override
+    public synchronized void startRecording()
+    {
+        if (state != State.NOT_RECORDING)
+            throw new IllegalStateException("current state: " + state);
+        state = State.RECORDING;
+    }
+
+    @Override
+    public synchronized void stopRecording()
+    {
+        if (state == State.CLOSED)
+            return;
+        state = State.CLOSED;
+        recorders.forEach(LatencyRecorder::stopRecording);
+        timer.cancel();
+    }
+
+    public void recordValue(String route, int status, long value)
+    {
+        int statusClass = status / 100;
+        if (statusClass < 1 || statusClass >= FAILED)
+            statusClass = 0;
+        record(route, statusClass, value);
+    }
+
+    public void recordFailure(String route, long value)
+    {
+        record(route, FAILED, value);
+    }
+
+    private void record(String route, int partition, long value)
+    {
+        // The values recorded outside the recording window would be discarded anyway.
+        if (state != State.RECORDING)
+            return;
+        // Lock-free lookup, only the creation of a new route or partition is synchronized;
+        // once the cap is reached, the routes that are not known go to the overflow without locking.
+        AtomicReferenceArray<Object> byPartition = partitions.get(route);
+        if (byPartition == null)
+            byPartition = partitions.size() >= maxRoutes - 1 ? overflowPartitions : newRoute(route);
+        Object recorder = byPartition.get(partition);
+        if (recorder == null)
+            recorder = newPartition(byPartition, route, partition);
+        if (recorder instanceof LatencyRecorder)
+            ((LatencyRecorder)recorder).recordValue(value);
+    }
+
+    private synchronized AtomicReferenceArray<Object> newRoute(String route)
+    {
+        AtomicReferenceArray<Object> byPartition = partitions.get(route);
+        if (byPartition != null)
+            return byPartition;
+
+        if (partitions.size() >= maxRoutes - 1)
+            return overflowPartitions;
+
+        byPartition = new AtomicReferenceArray<>(PARTITIONS.length);
+        partitions.put(route, byPartition);
+        return byPartition;
+    }
+
+    private synchronized Object newPartition(AtomicReferenceArray<Object> byPartition, String route, int partition)
+    {
+        Object recorder = byPartition.get(partition);
+        if (recorder != null || state != State.RECORDING)
+            return recorder;
+
+        String routeName = byPartition == overflowPartitions ? OVERFLOW_ROUTE : route;
+        String filename = filenamePrefix + "-" + sanitize(routeName) + "-" + PARTITIONS[partition] + ".hlog";
+        try
+        {
+            LatencyRecorder latencyRecorder = new LatencyRecorder(filename, timer);
+            latencyRecorder.startRecording();
+            recorders.add(latencyRecorder);
+            recorder = latencyRecorder;
+        }
+        catch (FileNotFoundException e)
+        {
+            LOG.warn("Cannot record the latencies of partition {}", filename, e);
+            recorder = DISABLED;
+        }
+        byPartition.set(partition, recorder);
+        return recorder;
+    }
+
+    private static String sanitize(String route)
+    {
+        if (route.isEmpty() || route.equals("/"))
+            return "root";
+        StringBuilder sb = new StringBuilder(route.length());
+        for (int i = 0; i < route.length(); i++)
+        {
+            char c = route.charAt(i);
+            if (c == '/' && i == 0)
+                continue;
+            sb.append(Character.isLetterOrDigit(c) || c == '.' || c == '_' ? c : '_');
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,135 @@
+package org.eclipse.jetty.perf.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+
+import org.eclipse.jetty.util.BufferUtil;
+
+/**
+ * The body of the responses of the tested handlers and servlets: a number of bytes held in a buffer of a given kind.
+ */
+public class Payload implements Serializable
+{
+    private static final byte[] PATTERN = "Hi there!".getBytes(StandardCharsets.US_ASCII);
+
+    public enum Source
+    {
+        /**
+         * A heap byte buffer.
+         */
+        HEAP,
+        /**
+         * A direct byte buffer.
+         */
+        DIRECT,
+        /**
+         * A read-only memory-mapped region of a temporary file.
+         */
+        MAPPED,
+    }
+
+    /**
+     * Writes a buffer to a stream without copying it, i.e.: the servlet {@code HttpOutput.write(ByteBuffer)}.
+     */
+    @FunctionalInterface
+    public interface BufferWriter
+    {
+        void write(ByteBuffer buffer) throws IOException;
+    }
+
+    private final int size;
+    private final Source source;
+
+    public Payload(int size, Source source)
+    {
+        if (size < 0)
+            throw new IllegalArgumentException("Invalid payload size: " + size);
+        this.size = size;
+        this.source = source;
+    }
+
+    public int getSize()
+    {
+        return size;
+    }
+
+    public Source getSource()
+    {
+        return source;
+    }
+
+    /**
+     * Create the buffer holding the payload, the returned buffer is meant to be shared by duplicating it.
+     */
+    public ByteBuffer toByteBuffer()
+    {
+        return switch (source)
+        {
+            case HEAP -> fill(ByteBuffer.allocate(size));
+            case DIRECT -> fill(ByteBuffer.allocateDirect(size));
+            case MAPPED -> map();
+        };
+    }
+
+    /**
+     * Write a buffer created by {@link #toByteBuffer()} without altering it: heap buffers are written from their array,
+     * other buffers are handed to the bufferWriter when there is one or else copied through a temporary array.
+     */
+    public static void writeTo(ByteBuffer buffer, OutputStream outputStream, BufferWriter bufferWriter) throws IOException
+    {
+        if (buffer.hasArray())
+            outputStream.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        else if (bufferWriter != null)
+            bufferWriter.write(buffer.asReadOnlyBuffer());
+        else
+            BufferUtil.writeTo(buffer.duplicate(), outputStream);
+    }
+
+    private ByteBuffer map()
+    {
+        try
+        {
+            Path file = Files.createTempFile("payload-" + size + "-", ".bin");
+            file.toFile().deleteOnExit();
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE))
+            {
+                ByteBuffer chunk = fill(ByteBuffer.allocate(Math.min(size, 1024 * 1024)));
+                long position = 0L;
+                while (position < size)
+                {
+                    chunk.clear().limit((int)Math.min(chunk.capacity(), size - position));
+                    position += channel.write(chunk, position);
+                }
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            }
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static ByteBuffer fill(ByteBuffer buffer)
+    {
+        while (buffer.hasRemaining())
+        {
+            buffer.put(PATTERN, 0, Math.min(PATTERN.length, buffer.remaining()));
+        }
+        return buffer.flip();
+    }
+
+    @Override
+    public String toString()
+    {
+        return size + "B_" + source.name().toLowerCase(Locale.ROOT);
+    }
+}
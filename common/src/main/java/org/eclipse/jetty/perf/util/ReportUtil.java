@@ -4,19 +4,29 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardCopyOption;
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.stream.Stream;
 
+import org.eclipse.jetty.perf.histogram.GcTimeline;
 import org.eclipse.jetty.perf.histogram.HgrmReport;
+import org.eclipse.jetty.perf.histogram.HlogSummary;
 import org.eclipse.jetty.perf.histogram.JHiccupReport;
 import org.eclipse.jetty.perf.histogram.PerfReport;
+import org.eclipse.jetty.perf.histogram.ThroughputTimeline;
+import org.eclipse.jetty.perf.monitoring.gc.GcMonitor;
+import org.eclipse.jetty.perf.monitoring.os.LinuxProcfsMonitor;
+import org.eclipse.jetty.perf.monitoring.os.LinuxThreadCpuMonitor;
+import org.eclipse.jetty.perf.util.ArtifactDownloader.Artifact;
 import org.mortbay.jetty.orchestrator.Cluster;
 import org.mortbay.jetty.orchestrator.NodeArray;
 import org.slf4j.Logger;
@@ -48,80 +58,153 @@ public class ReportUtil
 
     public static void generateReport(Path reportPath, Collection<String> nodeArrayIds, Cluster cluster) throws IOException
     {
-        for (String nodeArrayId : nodeArrayIds)
+        generateReport(reportPath, nodeArrayIds, cluster, EnumSet.of(Artifact.ALL));
+    }
+
+    public static void generateReport(Path reportPath, Collection<String> nodeArrayIds, Cluster cluster, Set<Artifact> artifacts) throws IOException
+    {
+        List<NodeArray> nodeArrays = nodeArrayIds.stream().map(cluster::nodeArray).toList();
+        List<Path> targetPaths = nodeArrayIds.stream().map(reportPath::resolve).toList();
+        ArtifactDownloader.download(nodeArrays, targetPaths, artifacts.stream().map(Artifact::getPattern).toList());
+        for (int i = 0; i < nodeArrays.size(); i++)
         {
-            NodeArray nodeArray = cluster.nodeArray(nodeArrayId);
-            Path targetPath = reportPath.resolve(nodeArrayId);
-            download(nodeArray, targetPath);
+            NodeArray nodeArray = nodeArrays.get(i);
+            Path targetPath = targetPaths.get(i);
             transformPerfHisto(nodeArray, targetPath);
             transformJHiccupHisto(nodeArray, targetPath);
+            writeThroughputTimeline(nodeArray, targetPath);
+            writeOsTimeline(nodeArray, targetPath, LinuxProcfsMonitor.DEFAULT_FILENAME);
+            writeOsTimeline(nodeArray, targetPath, LinuxThreadCpuMonitor.DEFAULT_FILENAME);
         }
     }
 
-    public static void download(NodeArray nodeArray, Path targetFolder, String... filenames) throws IOException
+    /**
+     * Align the samples of the OS monitors, e.g.: {@link LinuxProcfsMonitor}, with the intervals of perf.hlog, writing
+     * the interval number of perf.hlog as the first column so that the samples can be correlated with the latency of each interval.
+     * The first column of the samples must be their epoch timestamp in millis.
+     */
+    public static void writeOsTimeline(NodeArray nodeArray, Path targetFolder, String csvFilename) throws IOException
     {
-        // Empty string will make this method recursively download everything in the node arrays' CWD.
-        List<String> filenamesList = filenames.length == 0 ? Collections.singletonList("") : Arrays.asList(filenames);
         for (String id : nodeArray.ids())
         {
-            Path loaderRootPath = nodeArray.rootPathOf(id);
             Path reportFolder = targetFolder.resolve(id);
-            download(loaderRootPath, reportFolder, filenamesList);
-        }
-    }
+            Path hlogFile = reportFolder.resolve("perf.hlog");
+            Path csvFile = reportFolder.resolve(csvFilename);
+            if (!Files.isReadable(hlogFile) || !Files.isReadable(csvFile))
+                continue;
 
-    private static void download(Path source, Path destinationDir, List<String> filenames) throws IOException
-    {
-        Files.createDirectories(destinationDir);
-        for (String filename : filenames)
-        {
-            Path resolvedSourcePath = source.resolve(filename);
-            if (Files.isDirectory(resolvedSourcePath))
+            HlogSummary summary = HlogSummary.of(hlogFile);
+            List<String> lines = Files.readAllLines(csvFile, StandardCharsets.UTF_8);
+            if (summary.size() == 0 || lines.isEmpty())
+                continue;
+            long baseTime = summary.getStartTimestamp(0);
+            String timelineFilename = csvFile.getFileName().toString().replace(".csv", ".timeline.csv");
+            try (PrintWriter pw = new PrintWriter(csvFile.resolveSibling(timelineFilename).toFile(), StandardCharsets.UTF_8))
             {
-                try (Stream<Path> stream = Files.walk(resolvedSourcePath))
+                pw.println("interval," + lines.get(0));
+                for (String line : lines.subList(1, lines.size()))
                 {
-                    stream.forEach(path ->
-                    {
-                        try
-                        {
-                            Path targetPath = destinationDir.resolve(resolvedSourcePath.relativize(path).toString());
-                            Files.copy(path, targetPath, StandardCopyOption.REPLACE_EXISTING);
-                        }
-                        catch (IOException e)
-                        {
-                            LOG.error("Error downloading", e);
-                        }
-                    });
+                    // A sample covers the second before its timestamp, attribute it to the interval containing its middle.
+                    long timestamp = Long.parseLong(line.substring(0, line.indexOf(',')));
+                    long interval = Math.floorDiv(timestamp - 500L - baseTime, 1000L);
+                    if (interval >= 0L && interval < summary.size())
+                        pw.println(interval + "," + line);
                 }
             }
-            else
+        }
+    }
+
+    public static void writeThroughputTimeline(NodeArray nodeArray, Path targetFolder) throws IOException
+    {
+        List<ThroughputTimeline> timelines = new ArrayList<>();
+        for (String id : nodeArray.ids())
+        {
+            Path reportFolder = targetFolder.resolve(id);
+            Path hlogFile = reportFolder.resolve("perf.hlog");
+            if (!Files.isReadable(hlogFile))
+                continue;
+
+            ThroughputTimeline timeline = HlogSummary.of(hlogFile).getThroughputTimeline();
+            timelines.add(timeline);
+            try (OutputStream os = new FileOutputStream(new File(reportFolder.toFile(), hlogFile.getFileName() + ".tps.csv")))
             {
-                Files.copy(resolvedSourcePath, destinationDir.resolve(filename), StandardCopyOption.REPLACE_EXISTING);
+                timeline.writeCsv(os);
             }
         }
+        if (timelines.isEmpty())
+            return;
+        try (OutputStream os = new FileOutputStream(targetFolder.resolve("perf.hlog.tps.csv").toFile()))
+        {
+            ThroughputTimeline.sum(timelines).writeCsv(os);
+        }
     }
 
-    public static void transformPerfHisto(NodeArray nodeArray, Path targetFolder) throws IOException
+    public static void download(NodeArray nodeArray, Path targetFolder, Set<Artifact> artifacts) throws IOException
     {
-        transformPerfHisto(nodeArray, targetFolder, "perf.hlog");
+        ArtifactDownloader.download(List.of(nodeArray), List.of(targetFolder), artifacts.stream().map(Artifact::getPattern).toList());
     }
 
-    public static void transformPerfHisto(NodeArray nodeArray, Path targetFolder, String filename) throws IOException
+    public static void download(NodeArray nodeArray, Path targetFolder, String... filenames) throws IOException
     {
+        // No filename will make this method recursively download everything in the node arrays' CWD.
+        List<String> patterns = new ArrayList<>();
+        if (filenames.length == 0)
+            patterns.add(Artifact.ALL.getPattern());
+        for (String filename : filenames)
+        {
+            patterns.add("glob:" + filename);
+            patterns.add("glob:" + filename + "/**");
+        }
+        ArtifactDownloader.download(List.of(nodeArray), List.of(targetFolder), patterns);
+    }
+
+    public static void transformPerfHisto(NodeArray nodeArray, Path targetFolder) throws IOException
+    {
+        // Transform perf.hlog as well as all its variants, e.g.: perf-corrected.hlog, perf-parse.hlog...
+        Set<String> filenames = new TreeSet<>();
         for (String id : nodeArray.ids())
         {
             Path reportFolder = targetFolder.resolve(id);
-            Path hlogFile = reportFolder.resolve(filename);
-            if (!Files.isReadable(hlogFile))
+            if (!Files.isDirectory(reportFolder))
                 continue;
+            try (Stream<Path> stream = Files.list(reportFolder))
+            {
+                stream.map(path -> path.getFileName().toString())
+                    .filter(filename -> filename.startsWith("perf") && filename.endsWith(".hlog"))
+                    .forEach(filenames::add);
+            }
+        }
+        for (String filename : filenames)
+        {
+            transformPerfHisto(nodeArray, targetFolder, filename);
+        }
+    }
 
-            try (OutputStream os = new FileOutputStream(new File(reportFolder.toFile(), hlogFile.getFileName() + ".hgrm")))
+    public static void transformPerfHisto(NodeArray nodeArray, Path targetFolder, String filename) throws IOException
+    {
+        List<Path> hlogFiles = new ArrayList<>();
+        for (String id : nodeArray.ids())
+        {
+            Path hlogFile = targetFolder.resolve(id).resolve(filename);
+            if (Files.isReadable(hlogFile))
+                hlogFiles.add(hlogFile);
+        }
+        // Decode all nodes' logs in parallel, the summaries are cached for the reports and assertions.
+        List<HlogSummary> summaries = HlogSummary.of(hlogFiles);
+
+        for (int i = 0; i < hlogFiles.size(); i++)
+        {
+            Path hlogFile = hlogFiles.get(i);
+            File reportFolder = hlogFile.getParent().toFile();
+            try (OutputStream os = new FileOutputStream(new File(reportFolder, hlogFile.getFileName() + ".hgrm")))
             {
-                HgrmReport.createHgrmHistogram(hlogFile.toFile(), os);
+                HgrmReport.createHgrmHistogram(summaries.get(i), os);
             }
-            try (OutputStream os = new FileOutputStream(new File(reportFolder.toFile(), hlogFile.getFileName() + ".html")))
+            Path gcEventsFile = hlogFile.resolveSibling(GcMonitor.EVENTS_FILENAME);
+            GcTimeline gcTimeline = Files.isReadable(gcEventsFile) ? GcTimeline.of(gcEventsFile) : null;
+            try (OutputStream os = new FileOutputStream(new File(reportFolder, hlogFile.getFileName() + ".html")))
             {
-                PerfReport.createHtmlHistogram(hlogFile.toFile(), os);
+                PerfReport.createHtmlHistogram(summaries.get(i), gcTimeline, os);
             }
         }
     }
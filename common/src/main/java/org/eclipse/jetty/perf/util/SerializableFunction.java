@@ -0,0 +1,8 @@
+package org.eclipse.jetty.perf.util;
+
+import java.io.Serializable;
+import java.util.function.Function;
+
+public interface SerializableFunction<T, R> extends Serializable, Function<T, R>
+{
+}
@@ -0,0 +1,125 @@
+package org.eclipse.jetty.perf.util;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.server.Connector;
+
+/**
+ * Samples the memory and CPU used by the server every second, and writes them to a CSV file.
+ * Heap usage is reported both as currently used and as left after the last GC cycle, the latter being
+ * what the live connections retain. The selector CPU is the CPU time consumed by the threads that
+ * {@link ThreadRoleClassifier} sees running a {@code ManagedSelector}.
+ */
+public class ServerResourceRecorder implements Recorder
+{
+    private final Timer timer = new Timer();
+    private final List<? extends Connector> connectors;
+    private final PrintWriter printWriter;
+    private final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+    private final ThreadRoleClassifier threadRoleClassifier = new ThreadRoleClassifier(threadMXBean);
+    private final com.sun.management.OperatingSystemMXBean operatingSystemMXBean = (com.sun.management.OperatingSystemMXBean)ManagementFactory.getOperatingSystemMXBean();
+    private final List<MemoryPoolMXBean> heapPools = ManagementFactory.getMemoryPoolMXBeans().stream().filter(pool -> pool.getType() == MemoryType.HEAP).toList();
+    private final BufferPoolMXBean directBufferPool = ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class).stream().filter(pool -> pool.getName().equals("direct")).findAny().orElseThrow();
+    private final Map<Long, Long> threadCpuTimes = new HashMap<>();
+    private long processCpuTime;
+    private long second;
+    private boolean record;
+
+    public ServerResourceRecorder(String csvFilename, List<? extends Connector> connectors) throws IOException
+    {
+        this.connectors = connectors;
+        this.printWriter = new PrintWriter(csvFilename, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public synchronized void startRecording()
+    {
+        printWriter.println("second,connections,heap_used,heap_after_gc,direct_used,process_cpu_ms,selector_cpu_ms");
+        processCpuTime = operatingSystemMXBean.getProcessCpuTime();
+        for (long id : threadMXBean.getAllThreadIds())
+        {
+            threadCpuTimes.put(id, threadMXBean.getThreadCpuTime(id));
+        }
+        record = true;
+        timer.schedule(new TimerTask()
+        {
+            @Override
+            public void run()
+            {
+                sample();
+            }
+        }, 1000, 1000);
+    }
+
+    @Override
+    public synchronized void stopRecording()
+    {
+        if (!record)
+            return;
+        record = false;
+        timer.cancel();
+        printWriter.close();
+    }
+
+    private synchronized void sample()
+    {
+        if (!record)
+            return;
+
+        long heapUsed = 0L;
+        long heapAfterGc = 0L;
+        for (MemoryPoolMXBean pool : heapPools)
+        {
+            heapUsed += pool.getUsage().getUsed();
+            MemoryUsage collectionUsage = pool.getCollectionUsage();
+            heapAfterGc += collectionUsage != null ? collectionUsage.getUsed() : pool.getUsage().getUsed();
+        }
+
+        long now = operatingSystemMXBean.getProcessCpuTime();
+        long processCpu = now - processCpuTime;
+        processCpuTime = now;
+
+        long selectorCpu = 0L;
+        long[] threadIds = threadMXBean.getAllThreadIds();
+        ThreadRoleClassifier.Role[] threadRoles = threadRoleClassifier.classify(threadIds);
+        for (int i = 0; i < threadIds.length; i++)
+        {
+            long id = threadIds[i];
+            long cpuTime = threadMXBean.getThreadCpuTime(id);
+            if (cpuTime < 0L)
+                continue;
+            Long previous = threadCpuTimes.put(id, cpuTime);
+            if (threadRoles[i] == ThreadRoleClassifier.Role.SELECTOR)
+                selectorCpu += cpuTime - (previous == null ? 0L : previous);
+        }
+
+        printWriter.print(second++);
+        printWriter.print(',');
+        printWriter.print(connectors.stream().mapToInt(connector -> connector.getConnectedEndPoints().size()).sum());
+        printWriter.print(',');
+        printWriter.print(heapUsed);
+        printWriter.print(',');
+        printWriter.print(heapAfterGc);
+        printWriter.print(',');
+        printWriter.print(directBufferPool.getMemoryUsed());
+        printWriter.print(',');
+        printWriter.print(TimeUnit.NANOSECONDS.toMillis(processCpu));
+        printWriter.print(',');
+        printWriter.println(TimeUnit.NANOSECONDS.toMillis(selectorCpu));
+        printWriter.flush();
+    }
+}
@@ -0,0 +1,85 @@
+package org.eclipse.jetty.perf.util;
+
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Tells the role of the Jetty threads from the top frames of their stack: acceptors, selectors, reserved threads
+ * or {@code QueuedThreadPool} workers.
+ * Only the top {@link #STACK_DEPTH} frames are read, which is enough to recognize an idle thread, i.e.: a selector
+ * waiting in {@code select()} or a worker waiting for a job. A busy thread usually runs deeper than that, so it
+ * keeps the role it had when it was last recognized; as Jetty threads can switch roles, this is an approximation.
+ */
+public class ThreadRoleClassifier
+{
+    public static final int STACK_DEPTH = 16;
+
+    public enum Role
+    {
+        ACCEPTOR("org.eclipse.jetty.server.AbstractConnector$Acceptor"),
+        SELECTOR("org.eclipse.jetty.io.ManagedSelector"),
+        RESERVED("org.eclipse.jetty.util.thread.ReservedThreadExecutor"),
+        WORKER("org.eclipse.jetty.util.thread.QueuedThreadPool"),
+        OTHER(null);
+
+        private final String classNamePrefix;
+
+        Role(String classNamePrefix)
+        {
+            this.classNamePrefix = classNamePrefix;
+        }
+
+        private static Role of(ThreadInfo threadInfo)
+        {
+            // The roles are checked in order, as e.g.: a selector also runs in a QueuedThreadPool thread.
+            for (Role role : values())
+            {
+                if (role.classNamePrefix == null)
+                    break;
+                for (StackTraceElement element : threadInfo.getStackTrace())
+                {
+                    if (element.getClassName().startsWith(role.classNamePrefix))
+                        return role;
+                }
+            }
+            return null;
+        }
+    }
+
+    private final ThreadMXBean threadMXBean;
+    private Map<Long, Role> roles = new HashMap<>();
+
+    public ThreadRoleClassifier(ThreadMXBean threadMXBean)
+    {
+        this.threadMXBean = threadMXBean;
+    }
+
+    /**
+     * @return the role of each of the given threads, in the same order; threads that died are {@link Role#OTHER}
+     */
+    public synchronized Role[] classify(long[] threadIds)
+    {
+        Role[] result = new Role[threadIds.length];
+        // Only keep the roles of the live threads.
+        Map<Long, Role> liveRoles = new HashMap<>();
+        ThreadInfo[] threadInfos = threadMXBean.getThreadInfo(threadIds, STACK_DEPTH);
+        for (int i = 0; i < threadIds.length; i++)
+        {
+            ThreadInfo threadInfo = threadInfos[i];
+            if (threadInfo == null)
+            {
+                result[i] = Role.OTHER;
+                continue;
+            }
+            Role role = Role.of(threadInfo);
+            if (role == null)
+                role = roles.getOrDefault(threadIds[i], Role.OTHER);
+            liveRoles.put(threadIds[i], role);
+            result[i] = role;
+        }
+        roles = liveRoles;
+        return result;
+    }
+}
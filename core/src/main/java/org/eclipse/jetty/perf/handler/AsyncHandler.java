@@ -20,6 +20,11 @@ public class AsyncHandler extends Handler.Abstract.NonBlocking
         this.answer = byteBuffer;
     }
 
+    public AsyncHandler(ByteBuffer answer)
+    {
+        this.answer = answer;
+    }
+
     @Override
     public boolean handle(Request request, Response response, Callback callback)
     {
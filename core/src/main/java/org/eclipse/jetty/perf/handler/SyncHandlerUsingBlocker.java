@@ -21,6 +21,11 @@ public class SyncHandlerUsingBlocker extends Handler.Abstract
         this.answer = byteBuffer;
     }
 
+    public SyncHandlerUsingBlocker(ByteBuffer answer)
+    {
+        this.answer = answer;
+    }
+
     @Override
     public boolean handle(Request request, Response response, Callback callback) throws Exception
     {
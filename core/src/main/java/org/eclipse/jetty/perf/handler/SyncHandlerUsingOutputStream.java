@@ -1,8 +1,10 @@
 package org.eclipse.jetty.perf.handler;
 
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 
 import org.eclipse.jetty.io.Content;
+import org.eclipse.jetty.perf.util.Payload;
 import org.eclipse.jetty.server.Handler;
 import org.eclipse.jetty.server.Request;
 import org.eclipse.jetty.server.Response;
@@ -10,9 +12,14 @@ import org.eclipse.jetty.util.Callback;
 
 public class SyncHandlerUsingOutputStream extends Handler.Abstract
 {
-    private final byte[] answer;
+    private final ByteBuffer answer;
 
     public SyncHandlerUsingOutputStream(byte[] answer)
+    {
+        this(ByteBuffer.wrap(answer));
+    }
+
+    public SyncHandlerUsingOutputStream(ByteBuffer answer)
     {
         this.answer = answer;
     }
@@ -20,11 +27,13 @@ public class SyncHandlerUsingOutputStream extends Handler.Abstract
     @Override
     public boolean handle(Request request, Response response, Callback callback) throws Exception
     {
-        try (OutputStream outputStream = Response.asBufferedOutputStream(request, response))
+        Content.Sink sink = Response.asBufferedSink(request, response);
+        try (OutputStream outputStream = Content.Sink.asOutputStream(sink))
         {
             Content.Source.consumeAll(request);
             response.setStatus(200);
-            outputStream.write(answer);
+            // Heap buffers are written from their array, other buffers are written to the sink without being copied.
+            Payload.writeTo(answer, outputStream, buffer -> Content.Sink.write(sink, false, buffer));
         }
         callback.succeeded();
         return true;
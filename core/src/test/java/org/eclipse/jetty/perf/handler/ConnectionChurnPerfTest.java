@@ -0,0 +1,50 @@
+package org.eclipse.jetty.perf.handler;
+
+import java.time.Duration;
+
+import org.eclipse.jetty.perf.test.FlatPerfTest;
+import org.eclipse.jetty.perf.test.PerfTestParams;
+import org.eclipse.jetty.util.Jetty;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.TestInfo;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+public class ConnectionChurnPerfTest
+{
+    private static final Duration WARMUP_DURATION = Duration.ofSeconds(60);
+    private static final Duration RUN_DURATION = Duration.ofSeconds(180);
+
+    private String testName;
+
+    @BeforeEach
+    protected void beforeEach(TestInfo testInfo)
+    {
+        // Generate test name
+        String className = testInfo.getTestClass().orElseThrow().getName();
+        String simpleClassName = className.substring(className.lastIndexOf('.') + 1);
+        String methodName = testInfo.getTestMethod().orElseThrow().getName();
+        testName = simpleClassName + "_" + methodName + "_" + Jetty.VERSION;
+    }
+
+    @ParameterizedTest(name = "{0} {1}")
+    @CsvSource({
+        "http,    1,  5_000, 1, 2_000, 23_000, 20.0",
+        "http,   10, 20_000, 1, 2_000, 23_000, 15.0",
+        "http,  100, 60_000, 1, 2_000, 23_000, 15.0",
+        "https,   1,  2_000, 1, 8_000, 30_000, 25.0",
+        "https,  10, 10_000, 1, 4_000, 30_000, 20.0",
+        "https, 100, 40_000, 1, 3_000, 30_000, 15.0",
+    })
+    public void testAsyncConnectionChurn(PerfTestParams.Protocol protocol, int requestsPerConnection, int loaderRate, int loaderThreads, long expectedP99ServerLatency, long expectedP99ProbeLatency, double expectedP99ErrorMargin) throws Exception
+    {
+        PerfTestParams params = new PerfTestParams(protocol, loaderRate, loaderThreads, expectedP99ServerLatency, expectedP99ProbeLatency, expectedP99ErrorMargin)
+            .withConnectionChurn(requestsPerConnection);
+        boolean succeeded = FlatPerfTest.runTest(testName, params, WARMUP_DURATION, RUN_DURATION, () -> new AsyncHandler("Hi there!".getBytes(US_ASCII)));
+        assertThat("Performance assertions failure for " + params, succeeded, is(true));
+    }
+}
@@ -1,25 +1,37 @@
 package org.eclipse.jetty.perf.handler;
 
 import java.time.Duration;
+import java.util.Map;
 
+import org.eclipse.jetty.perf.loader.ClosedLoopLoadGenerator;
+import org.eclipse.jetty.perf.loader.ResourceMix;
+import org.eclipse.jetty.perf.test.ConnectorTopologyPerfTest;
 import org.eclipse.jetty.perf.test.FlatPerfTest;
+import org.eclipse.jetty.perf.test.IdleConnectionScalingPerfTest;
 import org.eclipse.jetty.perf.test.PerfTestParams;
+import org.eclipse.jetty.perf.test.SaturationPerfTest;
+import org.eclipse.jetty.perf.test.ThreadPoolTuningPerfTest;
 import org.eclipse.jetty.server.handler.ContextHandler;
 import org.eclipse.jetty.server.handler.ContextHandlerCollection;
 import org.eclipse.jetty.util.Jetty;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.TestInfo;
+import org.junit.jupiter.api.condition.EnabledIf;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
 
 import static java.nio.charset.StandardCharsets.US_ASCII;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
 
 public class CoreHandlerPerfTest
 {
     private static final Duration WARMUP_DURATION = Duration.ofSeconds(60);
     private static final Duration RUN_DURATION = Duration.ofSeconds(180);
+    private static final Duration SATURATION_STEP_WARMUP_DURATION = Duration.ofSeconds(20);
+    private static final Duration SATURATION_STEP_DURATION = Duration.ofSeconds(40);
 
     private String testName;
 
@@ -36,7 +48,9 @@ public class CoreHandlerPerfTest
     @ParameterizedTest(name = "{0}")
     @CsvSource({
         "http, 60_000, 1,  4_300, 23_000, 10.0",
-        "h2c,  60_000, 2, 15_000, 38_000, 15.0"
+        "h2c,  60_000, 2, 15_000, 38_000, 15.0",
+        "h2,   60_000, 2, 17_000, 40_000, 15.0",
+        "h3,   60_000, 2, 25_000, 50_000, 20.0"
     })
     public void testNoGzipAsync(PerfTestParams.Protocol protocol, int loaderRate, int loaderThreads, long expectedP99ServerLatency, long expectedP99ProbeLatency, double expectedP99ErrorMargin) throws Exception
     {
@@ -99,6 +113,31 @@ public class CoreHandlerPerfTest
         assertThat("Performance assertions failure for " + params, succeeded, is(true));
     }
 
+    @ParameterizedTest(name = "{0}")
+    @CsvSource({
+        "http, 60_000, 1,  4_300, 25_000, 10.0",
+        "h2c,  60_000, 2, 19_000, 38_000, 15.0"
+    })
+    @EnabledIf(value = "org.eclipse.jetty.perf.test.PerfTestParams#isVirtualThreadsSupported", disabledReason = "virtual threads require JDK 21+")
+    public void testNoGzipSyncUsingBlockerOnVirtualThreads(PerfTestParams.Protocol protocol, int loaderRate, int loaderThreads, long expectedP99ServerLatency, long expectedP99ProbeLatency, double expectedP99ErrorMargin) throws Exception
+    {
+        // Same workload as testNoGzipSyncUsingBlocker, to be compared with it and with testNoGzipAsync.
+        PerfTestParams params = new PerfTestParams(protocol, loaderRate, loaderThreads, expectedP99ServerLatency, expectedP99ProbeLatency, expectedP99ErrorMargin)
+            .withServerVirtualThreads(true);
+        boolean succeeded = FlatPerfTest.runTest(testName, params, WARMUP_DURATION, RUN_DURATION, () ->
+        {
+            ContextHandlerCollection contextHandlerCollection = new ContextHandlerCollection();
+            ContextHandler targetContextHandler = new ContextHandler("/");
+            contextHandlerCollection.addHandler(targetContextHandler);
+            ContextHandler uselessContextHandler = new ContextHandler("/useless");
+            contextHandlerCollection.addHandler(uselessContextHandler);
+            SyncHandlerUsingBlocker syncHandler = new SyncHandlerUsingBlocker("Hi there!".getBytes(US_ASCII));
+            targetContextHandler.setHandler(syncHandler);
+            return contextHandlerCollection;
+        });
+        assertThat("Performance assertions failure for " + params, succeeded, is(true));
+    }
+
     @ParameterizedTest(name = "{0}")
     @CsvSource({
         "http, 60_000, 1, 3_200, 22_000, 10.0",
@@ -120,4 +159,162 @@ public class CoreHandlerPerfTest
         });
         assertThat("Performance assertions failure for " + params, succeeded, is(true));
     }
+
+    @ParameterizedTest(name = "{0}")
+    @CsvSource({
+        "http,   16, 0,  3_000, 23_000, 15.0",
+        "http,  256, 0, 10_000, 40_000, 15.0",
+        "http, 4096, 0, 60_000, 80_000, 15.0",
+        "http, 4096, 5, 10_000, 40_000, 15.0",
+    })
+    public void testNoGzipAsyncClosedLoop(PerfTestParams.Protocol protocol, int loaderConcurrency, long meanThinkTimeMillis, long expectedP99ServerLatency, long expectedP99ProbeLatency, double expectedP99ErrorMargin) throws Exception
+    {
+        ClosedLoopLoadGenerator.ThinkTime thinkTime = meanThinkTimeMillis > 0 ? ClosedLoopLoadGenerator.ThinkTime.EXPONENTIAL : ClosedLoopLoadGenerator.ThinkTime.NONE;
+        PerfTestParams params = new PerfTestParams(protocol, loaderConcurrency, thinkTime, Duration.ofMillis(meanThinkTimeMillis), expectedP99ServerLatency, expectedP99ProbeLatency, expectedP99ErrorMargin);
+        boolean succeeded = FlatPerfTest.runTest(testName, params, WARMUP_DURATION, RUN_DURATION, () ->
+        {
+            ContextHandlerCollection contextHandlerCollection = new ContextHandlerCollection();
+            ContextHandler targetContextHandler = new ContextHandler("/");
+            contextHandlerCollection.addHandler(targetContextHandler);
+            ContextHandler uselessContextHandler = new ContextHandler("/useless");
+            contextHandlerCollection.addHandler(uselessContextHandler);
+            AsyncHandler asyncHandler = new AsyncHandler("Hi there!".getBytes(US_ASCII));
+            targetContextHandler.setHandler(asyncHandler);
+            return contextHandlerCollection;
+        });
+        assertThat("Performance assertions failure for " + params, succeeded, is(true));
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @CsvSource({
+        "http, 1, 60_000",
+        "h2c,  2, 60_000"
+    })
+    public void testNoGzipAsyncSaturation(PerfTestParams.Protocol protocol, int loaderThreads, int expectedMinSustainableRate) throws Exception
+    {
+        PerfTestParams params = new PerfTestParams(protocol, expectedMinSustainableRate, loaderThreads, 0, 0, 0.0);
+        int maxRate = SaturationPerfTest.runSearch(testName, params, SATURATION_STEP_WARMUP_DURATION, SATURATION_STEP_DURATION, 20_000, 640_000, 0.05, 5_000, 0.001, () ->
+        {
+            ContextHandlerCollection contextHandlerCollection = new ContextHandlerCollection();
+            ContextHandler targetContextHandler = new ContextHandler("/");
+            contextHandlerCollection.addHandler(targetContextHandler);
+            ContextHandler uselessContextHandler = new ContextHandler("/useless");
+            contextHandlerCollection.addHandler(uselessContextHandler);
+            AsyncHandler asyncHandler = new AsyncHandler("Hi there!".getBytes(US_ASCII));
+            targetContextHandler.setHandler(asyncHandler);
+            return contextHandlerCollection;
+        });
+        assertThat("Max sustainable rate for " + params, maxRate, greaterThanOrEqualTo(expectedMinSustainableRate));
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @CsvSource({
+        "http, 60_000, 1,  6_000, 25_000, 15.0",
+        "h2c,  60_000, 2, 20_000, 40_000, 15.0"
+    })
+    public void testNoGzipAsyncMixedWorkload(PerfTestParams.Protocol protocol, int loaderRate, int loaderThreads, long expectedP99ServerLatency, long expectedP99ProbeLatency, double expectedP99ErrorMargin) throws Exception
+    {
+        ResourceMix resourceMix = new ResourceMix()
+            .add(7, "GET", "/", 0)
+            .add(2, "POST", "/", 1024, Map.of("Content-Type", "application/octet-stream"))
+            .add(1, "POST", "/", 64 * 1024, Map.of("Content-Type", "application/octet-stream"));
+        PerfTestParams params = new PerfTestParams(protocol, loaderRate, loaderThreads, expectedP99ServerLatency, expectedP99ProbeLatency, expectedP99ErrorMargin).withResourceMix(resourceMix);
+        boolean succeeded = FlatPerfTest.runTest(testName, params, WARMUP_DURATION, RUN_DURATION, () ->
+        {
+            ContextHandlerCollection contextHandlerCollection = new ContextHandlerCollection();
+            ContextHandler targetContextHandler = new ContextHandler("/");
+            contextHandlerCollection.addHandler(targetContextHandler);
+            ContextHandler uselessContextHandler = new ContextHandler("/useless");
+            contextHandlerCollection.addHandler(uselessContextHandler);
+            AsyncHandler asyncHandler = new AsyncHandler("Hi there!".getBytes(US_ASCII));
+            targetContextHandler.setHandler(asyncHandler);
+            return contextHandlerCollection;
+        });
+        assertThat("Performance assertions failure for " + params, succeeded, is(true));
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @CsvSource({
+        "http, 1_000, 1, 30_000",
+        "h2c,  1_000, 1, 45_000"
+    })
+    public void testNoGzipAsyncIdleConnections(PerfTestParams.Protocol protocol, int loaderRate, int loaderThreads, long expectedMaxP99ProbeLatency) throws Exception
+    {
+        // From 10k to 200k idle connections in total with 4 loaders, which requires the loaders to have
+        // a local port range wider than the default one, i.e.: sysctl net.ipv4.ip_local_port_range="1024 65535".
+        int[] idleConnectionsPerLoader = {0, 2_500, 12_500, 25_000, 50_000};
+        PerfTestParams params = new PerfTestParams(protocol, loaderRate, loaderThreads, 0, 0, 0.0);
+        long[] probeP99s = IdleConnectionScalingPerfTest.runSweep(testName, params, WARMUP_DURATION, RUN_DURATION, idleConnectionsPerLoader, () ->
+        {
+            ContextHandlerCollection contextHandlerCollection = new ContextHandlerCollection();
+            ContextHandler targetContextHandler = new ContextHandler("/");
+            contextHandlerCollection.addHandler(targetContextHandler);
+            AsyncHandler asyncHandler = new AsyncHandler("Hi there!".getBytes(US_ASCII));
+            targetContextHandler.setHandler(asyncHandler);
+            return contextHandlerCollection;
+        });
+        assertThat("Probe p99 with the most idle connections for " + params, probeP99s[probeP99s.length - 1], lessThanOrEqualTo(expectedMaxP99ProbeLatency));
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @CsvSource({
+        "http, 60_000, 1",
+        "h2c,  60_000, 2"
+    })
+    public void testNoGzipAsyncConnectorTopology(PerfTestParams.Protocol protocol, int loaderRate, int loaderThreads) throws Exception
+    {
+        // acceptors, selectors, connectors
+        int[][] topologies = {
+            {1, 4, 1},
+            {1, 12, 1},
+            {4, 24, 1},
+            {4, 48, 1},
+            {1, 12, 2},
+            {1, 6, 4},
+        };
+        PerfTestParams params = new PerfTestParams(protocol, loaderRate, loaderThreads, 0, 0, 0.0);
+        boolean succeeded = ConnectorTopologyPerfTest.runSweep(testName, params, WARMUP_DURATION, RUN_DURATION, topologies, () ->
+        {
+            ContextHandlerCollection contextHandlerCollection = new ContextHandlerCollection();
+            ContextHandler targetContextHandler = new ContextHandler("/");
+            contextHandlerCollection.addHandler(targetContextHandler);
+            ContextHandler uselessContextHandler = new ContextHandler("/useless");
+            contextHandlerCollection.addHandler(uselessContextHandler);
+            AsyncHandler asyncHandler = new AsyncHandler("Hi there!".getBytes(US_ASCII));
+            targetContextHandler.setHandler(asyncHandler);
+            return contextHandlerCollection;
+        });
+        assertThat("Connector topology sweep aborted for " + params, succeeded, is(true));
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @CsvSource({
+        "http, 60_000, 1",
+        "h2c,  60_000, 2"
+    })
+    public void testNoGzipAsyncThreadPool(PerfTestParams.Protocol protocol, int loaderRate, int loaderThreads) throws Exception
+    {
+        // min threads, max threads, reserved threads; 0 reserved threads forces produce-execute-consume
+        int[][] threadPools = {
+            {8, 200, -1},
+            {8, 200, 0},
+            {8, 200, 4},
+            {8, 200, 16},
+            {50, 50, -1},
+            {200, 500, -1},
+        };
+        PerfTestParams params = new PerfTestParams(protocol, loaderRate, loaderThreads, 0, 0, 0.0);
+        boolean succeeded = ThreadPoolTuningPerfTest.runSweep(testName, params, WARMUP_DURATION, RUN_DURATION, threadPools, () ->
+        {
+            ContextHandlerCollection contextHandlerCollection = new ContextHandlerCollection();
+            ContextHandler targetContextHandler = new ContextHandler("/");
+            contextHandlerCollection.addHandler(targetContextHandler);
+            ContextHandler uselessContextHandler = new ContextHandler("/useless");
+            contextHandlerCollection.addHandler(uselessContextHandler);
+            AsyncHandler asyncHandler = new AsyncHandler("Hi there!".getBytes(US_ASCII));
+            targetContextHandler.setHandler(asyncHandler);
+            return contextHandlerCollection;
+        });
+        assertThat("Thread pool sweep aborted for " + params, succeeded, is(true));
+    }
 }
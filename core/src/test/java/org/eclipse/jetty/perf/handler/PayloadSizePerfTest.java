@@ -0,0 +1,105 @@
+package org.eclipse.jetty.perf.handler;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+
+import org.eclipse.jetty.perf.loader.ResourceMix;
+import org.eclipse.jetty.perf.test.FlatPerfTest;
+import org.eclipse.jetty.perf.test.PerfTestParams;
+import org.eclipse.jetty.perf.util.Payload;
+import org.eclipse.jetty.perf.util.SerializableFunction;
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.handler.ContextHandler;
+import org.eclipse.jetty.server.handler.ContextHandlerCollection;
+import org.eclipse.jetty.util.Jetty;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.TestInfo;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+public class PayloadSizePerfTest
+{
+    private static final Duration WARMUP_DURATION = Duration.ofSeconds(60);
+    private static final Duration RUN_DURATION = Duration.ofSeconds(180);
+
+    private String testName;
+
+    @BeforeEach
+    protected void beforeEach(TestInfo testInfo)
+    {
+        // Generate test name
+        String className = testInfo.getTestClass().orElseThrow().getName();
+        String simpleClassName = className.substring(className.lastIndexOf('.') + 1);
+        String methodName = testInfo.getTestMethod().orElseThrow().getName();
+        testName = simpleClassName + "_" + methodName + "_" + Jetty.VERSION;
+    }
+
+    @ParameterizedTest(name = "{0} {1} {2}")
+    @CsvSource({
+        "http,         1, HEAP,   60_000, 1,     4_300, 23_000, 15.0",
+        "http,     1_024, HEAP,   60_000, 1,     4_500, 23_000, 15.0",
+        "http,     1_024, DIRECT, 60_000, 1,     4_500, 23_000, 15.0",
+        "http,    65_536, HEAP,   10_000, 1,    10_000, 23_000, 15.0",
+        "http,    65_536, DIRECT, 10_000, 1,    10_000, 23_000, 15.0",
+        "http,    65_536, MAPPED, 10_000, 1,    10_000, 23_000, 15.0",
+        "http, 1_048_576, HEAP,      500, 1,    60_000, 25_000, 20.0",
+        "http, 1_048_576, DIRECT,    500, 1,    60_000, 25_000, 20.0",
+        "http, 1_048_576, MAPPED,    500, 1,    60_000, 25_000, 20.0",
+        "http, 104_857_600, DIRECT,    2, 1, 3_000_000, 25_000, 25.0",
+        "http, 104_857_600, MAPPED,    2, 1, 3_000_000, 25_000, 25.0",
+        "h2c,     65_536, DIRECT, 10_000, 2,    20_000, 38_000, 15.0",
+        "h2c,  1_048_576, DIRECT,    500, 2,   100_000, 38_000, 20.0",
+    })
+    public void testAsyncPayloadSize(PerfTestParams.Protocol protocol, int payloadSize, Payload.Source payloadSource, int loaderRate, int loaderThreads, long expectedP99ServerLatency, long expectedP99ProbeLatency, double expectedP99ErrorMargin) throws Exception
+    {
+        runPayloadTest(new PerfTestParams(protocol, loaderRate, loaderThreads, expectedP99ServerLatency, expectedP99ProbeLatency, expectedP99ErrorMargin), new Payload(payloadSize, payloadSource), AsyncHandler::new);
+    }
+
+    @ParameterizedTest(name = "{0} {1} {2}")
+    @CsvSource({
+        "http,     1_024, HEAP,   60_000, 1,     4_500, 23_000, 15.0",
+        "http,    65_536, DIRECT, 10_000, 1,    10_000, 23_000, 15.0",
+        "http, 1_048_576, MAPPED,    500, 1,    60_000, 25_000, 20.0",
+        "h2c,     65_536, DIRECT, 10_000, 2,    20_000, 38_000, 15.0",
+    })
+    public void testSyncUsingBlockerPayloadSize(PerfTestParams.Protocol protocol, int payloadSize, Payload.Source payloadSource, int loaderRate, int loaderThreads, long expectedP99ServerLatency, long expectedP99ProbeLatency, double expectedP99ErrorMargin) throws Exception
+    {
+        runPayloadTest(new PerfTestParams(protocol, loaderRate, loaderThreads, expectedP99ServerLatency, expectedP99ProbeLatency, expectedP99ErrorMargin), new Payload(payloadSize, payloadSource), SyncHandlerUsingBlocker::new);
+    }
+
+    @ParameterizedTest(name = "{0} {1} {2}")
+    @CsvSource({
+        "http,     1_024, HEAP,   60_000, 1,     4_500, 23_000, 15.0",
+        "http,    65_536, DIRECT, 10_000, 1,    10_000, 23_000, 15.0",
+        "http, 1_048_576, MAPPED,    500, 1,    60_000, 25_000, 20.0",
+        "h2c,     65_536, DIRECT, 10_000, 2,    20_000, 38_000, 15.0",
+    })
+    public void testSyncUsingOutputStreamPayloadSize(PerfTestParams.Protocol protocol, int payloadSize, Payload.Source payloadSource, int loaderRate, int loaderThreads, long expectedP99ServerLatency, long expectedP99ProbeLatency, double expectedP99ErrorMargin) throws Exception
+    {
+        runPayloadTest(new PerfTestParams(protocol, loaderRate, loaderThreads, expectedP99ServerLatency, expectedP99ProbeLatency, expectedP99ErrorMargin), new Payload(payloadSize, payloadSource), SyncHandlerUsingOutputStream::new);
+    }
+
+    private void runPayloadTest(PerfTestParams params, Payload payload, SerializableFunction<ByteBuffer, Handler> payloadHandlerFactory) throws Exception
+    {
+        // The loaders fetch the payload while the probe keeps measuring the latency of a tiny response.
+        PerfTestParams payloadParams = params
+            .withResourceMix(ResourceMix.of("/payload"))
+            .withPayload(payload);
+        boolean succeeded = FlatPerfTest.runTest(testName, payloadParams, WARMUP_DURATION, RUN_DURATION, () ->
+        {
+            ContextHandlerCollection contextHandlerCollection = new ContextHandlerCollection();
+            ContextHandler payloadContextHandler = new ContextHandler("/payload");
+            payloadContextHandler.setHandler(payloadHandlerFactory.apply(payload.toByteBuffer()));
+            contextHandlerCollection.addHandler(payloadContextHandler);
+            ContextHandler targetContextHandler = new ContextHandler("/");
+            targetContextHandler.setHandler(new AsyncHandler("Hi there!".getBytes(US_ASCII)));
+            contextHandlerCollection.addHandler(targetContextHandler);
+            return contextHandlerCollection;
+        });
+        assertThat("Performance assertions failure for " + payloadParams, succeeded, is(true));
+    }
+}
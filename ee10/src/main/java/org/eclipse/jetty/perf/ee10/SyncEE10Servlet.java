@@ -1,18 +1,27 @@
 package org.eclipse.jetty.perf.ee10;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.ServletOutputStream;
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import org.eclipse.jetty.ee10.servlet.HttpOutput;
+import org.eclipse.jetty.perf.util.Payload;
 
 public class SyncEE10Servlet extends HttpServlet
 {
     private final ThreadLocal<byte[]> bufferTl = ThreadLocal.withInitial(() -> new byte[16]);
-    private final byte[] answer;
+    private final ByteBuffer answer;
 
     public SyncEE10Servlet(byte[] answer)
+    {
+        this(ByteBuffer.wrap(answer));
+    }
+
+    public SyncEE10Servlet(ByteBuffer answer)
     {
         this.answer = answer;
     }
@@ -28,6 +37,7 @@ public class SyncEE10Servlet extends HttpServlet
                 break;
         }
         response.setStatus(200);
-        response.getOutputStream().write(answer);
+        ServletOutputStream outputStream = response.getOutputStream();
+        Payload.writeTo(answer, outputStream, outputStream instanceof HttpOutput httpOutput ? httpOutput::write : null);
     }
 }
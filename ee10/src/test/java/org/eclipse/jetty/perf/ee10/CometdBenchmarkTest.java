@@ -11,6 +11,7 @@ import java.util.concurrent.TimeUnit;
 
 import org.eclipse.jetty.perf.jdk.LocalJdk;
 import org.eclipse.jetty.perf.monitoring.ConfigurableMonitor;
+import org.eclipse.jetty.perf.monitoring.asyncprof.AsyncProfilerMonitor;
 import org.eclipse.jetty.perf.util.OutputCapturer;
 import org.eclipse.jetty.perf.util.ReportUtil;
 import org.eclipse.jetty.util.Jetty;
@@ -59,7 +60,12 @@ public class CometdBenchmarkTest implements Serializable
             MONITORED_ITEMS.contains(ConfigurableMonitor.Item.ASYNC_PROF_ALLOC) ||
             MONITORED_ITEMS.contains(ConfigurableMonitor.Item.ASYNC_PROF_LOCK) ||
             MONITORED_ITEMS.contains(ConfigurableMonitor.Item.ASYNC_PROF_CACHE_MISSES))
+        {
             result.addAll(List.of("-XX:+UnlockDiagnosticVMOptions", "-XX:+DebugNonSafepoints"));
+            String asyncProfilerLib = System.getProperty(AsyncProfilerMonitor.LIB_PROPERTY);
+            if (asyncProfilerLib != null)
+                result.add("-D" + AsyncProfilerMonitor.LIB_PROPERTY + "=" + asyncProfilerLib);
+        }
         result.addAll(Arrays.asList(extra));
         return result.toArray(new String[0]);
     }
@@ -139,6 +145,7 @@ public class CometdBenchmarkTest implements Serializable
     private void startMonitoring(ClusterTools tools) throws Exception
     {
         ConfigurableMonitor monitor = new ConfigurableMonitor(MONITORED_ITEMS);
+        monitor.startRecording();
         tools.nodeEnvironment().put(ConfigurableMonitor.class.getName(), monitor);
     }
 
@@ -146,7 +153,10 @@ public class CometdBenchmarkTest implements Serializable
     {
         ConfigurableMonitor monitor = (ConfigurableMonitor)tools.nodeEnvironment().get(ConfigurableMonitor.class.getName());
         if (monitor != null)
+        {
+            monitor.stopRecording();
             monitor.close();
+        }
     }
 
     private static int getClientsCount()
@@ -1,15 +1,21 @@
 package org.eclipse.jetty.perf.ee10;
 
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 
+import jakarta.servlet.http.HttpServlet;
 import org.eclipse.jetty.ee10.servlet.ServletContextHandler;
+import org.eclipse.jetty.perf.loader.ResourceMix;
 import org.eclipse.jetty.perf.test.FlatPerfTest;
 import org.eclipse.jetty.perf.test.PerfTestParams;
+import org.eclipse.jetty.perf.util.Payload;
+import org.eclipse.jetty.perf.util.SerializableFunction;
 import org.eclipse.jetty.server.handler.ContextHandlerCollection;
 import org.eclipse.jetty.util.Jetty;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.TestInfo;
+import org.junit.jupiter.api.condition.EnabledIf;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
 
@@ -80,4 +86,77 @@ public class EE10ServletPerfTest
         });
         assertThat("Performance assertions failure for " + params, succeeded, is(true));
     }
+
+    @ParameterizedTest(name = "{0}")
+    @CsvSource({
+        "http, 60_000, 1,  5_000, 25_000, 10.0",
+        "h2c,  60_000, 2, 18_000, 38_000, 15.0"
+    })
+    @EnabledIf(value = "org.eclipse.jetty.perf.test.PerfTestParams#isVirtualThreadsSupported", disabledReason = "virtual threads require JDK 21+")
+    public void testNoGzipSyncOnVirtualThreads(PerfTestParams.Protocol protocol, int loaderRate, int loaderThreads, long expectedP99ServerLatency, long expectedP99ProbeLatency, double expectedP99ErrorMargin) throws Exception
+    {
+        // Same workload as testNoGzipSync, to be compared with it and with testNoGzipAsync.
+        PerfTestParams params = new PerfTestParams(protocol, loaderRate, loaderThreads, expectedP99ServerLatency, expectedP99ProbeLatency, expectedP99ErrorMargin)
+            .withServerVirtualThreads(true);
+        boolean succeeded = FlatPerfTest.runTest(testName, params, WARMUP_DURATION, RUN_DURATION, () ->
+        {
+            ContextHandlerCollection contextHandlerCollection = new ContextHandlerCollection();
+            ServletContextHandler targetContextHandler = new ServletContextHandler();
+            targetContextHandler.setContextPath("/");
+            targetContextHandler.addServlet(new SyncEE10Servlet("Hi there!".getBytes(StandardCharsets.ISO_8859_1)), "/*");
+            contextHandlerCollection.addHandler(targetContextHandler);
+            ServletContextHandler uselessContextHandler = new ServletContextHandler();
+            uselessContextHandler.setContextPath("/useless");
+            uselessContextHandler.addServlet(new Always404Servlet(), "/*");
+            contextHandlerCollection.addHandler(uselessContextHandler);
+            return contextHandlerCollection;
+        });
+        assertThat("Performance assertions failure for " + params, succeeded, is(true));
+    }
+
+    @ParameterizedTest(name = "{0} {1} {2}")
+    @CsvSource({
+        "http,     1_024, HEAP,   60_000, 1,  5_000, 25_000, 15.0",
+        "http,    65_536, DIRECT, 10_000, 1, 12_000, 25_000, 15.0",
+        "http, 1_048_576, MAPPED,    500, 1, 60_000, 25_000, 20.0",
+        "h2c,     65_536, DIRECT, 10_000, 2, 22_000, 38_000, 15.0",
+    })
+    public void testPayloadSizeAsync(PerfTestParams.Protocol protocol, int payloadSize, Payload.Source payloadSource, int loaderRate, int loaderThreads, long expectedP99ServerLatency, long expectedP99ProbeLatency, double expectedP99ErrorMargin) throws Exception
+    {
+        runPayloadTest(new PerfTestParams(protocol, loaderRate, loaderThreads, expectedP99ServerLatency, expectedP99ProbeLatency, expectedP99ErrorMargin), new Payload(payloadSize, payloadSource), AsyncEE10Servlet::new);
+    }
+
+    @ParameterizedTest(name = "{0} {1} {2}")
+    @CsvSource({
+        "http,     1_024, HEAP,   60_000, 1,  5_000, 25_000, 15.0",
+        "http,    65_536, DIRECT, 10_000, 1, 12_000, 25_000, 15.0",
+        "http, 1_048_576, MAPPED,    500, 1, 60_000, 25_000, 20.0",
+        "h2c,     65_536, DIRECT, 10_000, 2, 22_000, 38_000, 15.0",
+    })
+    public void testPayloadSizeSync(PerfTestParams.Protocol protocol, int payloadSize, Payload.Source payloadSource, int loaderRate, int loaderThreads, long expectedP99ServerLatency, long expectedP99ProbeLatency, double expectedP99ErrorMargin) throws Exception
+    {
+        runPayloadTest(new PerfTestParams(protocol, loaderRate, loaderThreads, expectedP99ServerLatency, expectedP99ProbeLatency, expectedP99ErrorMargin), new Payload(payloadSize, payloadSource), SyncEE10Servlet::new);
+    }
+
+    private void runPayloadTest(PerfTestParams params, Payload payload, SerializableFunction<ByteBuffer, HttpServlet> payloadServletFactory) throws Exception
+    {
+        // The loaders fetch the payload while the probe keeps measuring the latency of a tiny response.
+        PerfTestParams payloadParams = params
+            .withResourceMix(ResourceMix.of("/payload"))
+            .withPayload(payload);
+        boolean succeeded = FlatPerfTest.runTest(testName, payloadParams, WARMUP_DURATION, RUN_DURATION, () ->
+        {
+            ContextHandlerCollection contextHandlerCollection = new ContextHandlerCollection();
+            ServletContextHandler payloadContextHandler = new ServletContextHandler();
+            payloadContextHandler.setContextPath("/payload");
+            payloadContextHandler.addServlet(payloadServletFactory.apply(payload.toByteBuffer()), "/*");
+            contextHandlerCollection.addHandler(payloadContextHandler);
+            ServletContextHandler targetContextHandler = new ServletContextHandler();
+            targetContextHandler.setContextPath("/");
+            targetContextHandler.addServlet(new AsyncEE10Servlet("Hi there!".getBytes(StandardCharsets.ISO_8859_1)), "/*");
+            contextHandlerCollection.addHandler(targetContextHandler);
+            return contextHandlerCollection;
+        });
+        assertThat("Performance assertions failure for " + payloadParams, succeeded, is(true));
+    }
 }
@@ -1,20 +1,29 @@
 package org.eclipse.jetty.perf.ee9;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 import jakarta.servlet.AsyncContext;
 import jakarta.servlet.ReadListener;
 import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.ServletOutputStream;
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import org.eclipse.jetty.ee9.nested.HttpOutput;
+import org.eclipse.jetty.perf.util.Payload;
 
 public class AsyncEE9Servlet extends HttpServlet
 {
     private final ThreadLocal<byte[]> bufferTl = ThreadLocal.withInitial(() -> new byte[16]);
-    private final byte[] answer;
+    private final ByteBuffer answer;
 
     public AsyncEE9Servlet(byte[] answer)
+    {
+        this(ByteBuffer.wrap(answer));
+    }
+
+    public AsyncEE9Servlet(ByteBuffer answer)
     {
         this.answer = answer;
     }
@@ -39,7 +48,8 @@ public class AsyncEE9Servlet extends HttpServlet
             public void onAllDataRead() throws IOException
             {
                 response.setStatus(200);
-                response.getOutputStream().write(answer);
+                ServletOutputStream outputStream = response.getOutputStream();
+                Payload.writeTo(answer, outputStream, outputStream instanceof HttpOutput httpOutput ? httpOutput::write : null);
                 asyncContext.complete();
             }
 
@@ -1,18 +1,27 @@
 package org.eclipse.jetty.perf.ee9;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.ServletOutputStream;
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import org.eclipse.jetty.ee9.nested.HttpOutput;
+import org.eclipse.jetty.perf.util.Payload;
 
 public class SyncEE9Servlet extends HttpServlet
 {
     private final ThreadLocal<byte[]> bufferTl = ThreadLocal.withInitial(() -> new byte[16]);
-    private final byte[] answer;
+    private final ByteBuffer answer;
 
     public SyncEE9Servlet(byte[] answer)
+    {
+        this(ByteBuffer.wrap(answer));
+    }
+
+    public SyncEE9Servlet(ByteBuffer answer)
     {
         this.answer = answer;
     }
@@ -28,6 +37,7 @@ public class SyncEE9Servlet extends HttpServlet
                 break;
         }
         response.setStatus(200);
-        response.getOutputStream().write(answer);
+        ServletOutputStream outputStream = response.getOutputStream();
+        Payload.writeTo(answer, outputStream, outputStream instanceof HttpOutput httpOutput ? httpOutput::write : null);
     }
 }
@@ -1,16 +1,22 @@
 package org.eclipse.jetty.perf.ee9;
 
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 
+import jakarta.servlet.http.HttpServlet;
 import org.eclipse.jetty.ee9.servlet.ServletContextHandler;
 import org.eclipse.jetty.ee9.servlet.ServletHolder;
+import org.eclipse.jetty.perf.loader.ResourceMix;
 import org.eclipse.jetty.perf.test.FlatPerfTest;
 import org.eclipse.jetty.perf.test.PerfTestParams;
+import org.eclipse.jetty.perf.util.Payload;
+import org.eclipse.jetty.perf.util.SerializableFunction;
 import org.eclipse.jetty.server.handler.ContextHandlerCollection;
 import org.eclipse.jetty.util.Jetty;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.TestInfo;
+import org.junit.jupiter.api.condition.EnabledIf;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
 
@@ -81,4 +87,77 @@ public class EE9ServletPerfTest
         });
         assertThat("Performance assertions failure for " + params, succeeded, is(true));
     }
+
+    @ParameterizedTest(name = "{0}")
+    @CsvSource({
+        "http, 60_000, 1,  5_500, 25_000, 10.0",
+        "h2c,  60_000, 2, 18_000, 38_000, 15.0"
+    })
+    @EnabledIf(value = "org.eclipse.jetty.perf.test.PerfTestParams#isVirtualThreadsSupported", disabledReason = "virtual threads require JDK 21+")
+    public void testNoGzipSyncOnVirtualThreads(PerfTestParams.Protocol protocol, int loaderRate, int loaderThreads, long expectedP99ServerLatency, long expectedP99ProbeLatency, double expectedP99ErrorMargin) throws Exception
+    {
+        // Same workload as testNoGzipSync, to be compared with it and with testNoGzipAsync.
+        PerfTestParams params = new PerfTestParams(protocol, loaderRate, loaderThreads, expectedP99ServerLatency, expectedP99ProbeLatency, expectedP99ErrorMargin)
+            .withServerVirtualThreads(true);
+        boolean succeeded = FlatPerfTest.runTest(testName, params, WARMUP_DURATION, RUN_DURATION, () ->
+        {
+            ContextHandlerCollection contextHandlerCollection = new ContextHandlerCollection();
+            ServletContextHandler targetContextHandler = new ServletContextHandler();
+            targetContextHandler.setContextPath("/");
+            targetContextHandler.addServlet(new ServletHolder(new SyncEE9Servlet("Hi there!".getBytes(StandardCharsets.ISO_8859_1))), "/*");
+            contextHandlerCollection.addHandler(targetContextHandler.getCoreContextHandler());
+            ServletContextHandler uselessContextHandler = new ServletContextHandler();
+            uselessContextHandler.setContextPath("/useless");
+            uselessContextHandler.addServlet(new ServletHolder(new Always404Servlet()), "/*");
+            contextHandlerCollection.addHandler(uselessContextHandler.getCoreContextHandler());
+            return contextHandlerCollection;
+        });
+        assertThat("Performance assertions failure for " + params, succeeded, is(true));
+    }
+
+    @ParameterizedTest(name = "{0} {1} {2}")
+    @CsvSource({
+        "http,     1_024, HEAP,   60_000, 1,  5_000, 25_000, 15.0",
+        "http,    65_536, DIRECT, 10_000, 1, 12_000, 25_000, 15.0",
+        "http, 1_048_576, MAPPED,    500, 1, 60_000, 25_000, 20.0",
+        "h2c,     65_536, DIRECT, 10_000, 2, 22_000, 38_000, 15.0",
+    })
+    public void testPayloadSizeAsync(PerfTestParams.Protocol protocol, int payloadSize, Payload.Source payloadSource, int loaderRate, int loaderThreads, long expectedP99ServerLatency, long expectedP99ProbeLatency, double expectedP99ErrorMargin) throws Exception
+    {
+        runPayloadTest(new PerfTestParams(protocol, loaderRate, loaderThreads, expectedP99ServerLatency, expectedP99ProbeLatency, expectedP99ErrorMargin), new Payload(payloadSize, payloadSource), AsyncEE9Servlet::new);
+    }
+
+    @ParameterizedTest(name = "{0} {1} {2}")
+    @CsvSource({
+        "http,     1_024, HEAP,   60_000, 1,  5_000, 25_000, 15.0",
+        "http,    65_536, DIRECT, 10_000, 1, 12_000, 25_000, 15.0",
+        "http, 1_048_576, MAPPED,    500, 1, 60_000, 25_000, 20.0",
+        "h2c,     65_536, DIRECT, 10_000, 2, 22_000, 38_000, 15.0",
+    })
+    public void testPayloadSizeSync(PerfTestParams.Protocol protocol, int payloadSize, Payload.Source payloadSource, int loaderRate, int loaderThreads, long expectedP99ServerLatency, long expectedP99ProbeLatency, double expectedP99ErrorMargin) throws Exception
+    {
+        runPayloadTest(new PerfTestParams(protocol, loaderRate, loaderThreads, expectedP99ServerLatency, expectedP99ProbeLatency, expectedP99ErrorMargin), new Payload(payloadSize, payloadSource), SyncEE9Servlet::new);
+    }
+
+    private void runPayloadTest(PerfTestParams params, Payload payload, SerializableFunction<ByteBuffer, HttpServlet> payloadServletFactory) throws Exception
+    {
+        // The loaders fetch the payload while the probe keeps measuring the latency of a tiny response.
+        PerfTestParams payloadParams = params
+            .withResourceMix(ResourceMix.of("/payload"))
+            .withPayload(payload);
+        boolean succeeded = FlatPerfTest.runTest(testName, payloadParams, WARMUP_DURATION, RUN_DURATION, () ->
+        {
+            ContextHandlerCollection contextHandlerCollection = new ContextHandlerCollection();
+            ServletContextHandler payloadContextHandler = new ServletContextHandler();
+            payloadContextHandler.setContextPath("/payload");
+            payloadContextHandler.addServlet(new ServletHolder(payloadServletFactory.apply(payload.toByteBuffer())), "/*");
+            contextHandlerCollection.addHandler(payloadContextHandler.getCoreContextHandler());
+            ServletContextHandler targetContextHandler = new ServletContextHandler();
+            targetContextHandler.setContextPath("/");
+            targetContextHandler.addServlet(new ServletHolder(new AsyncEE9Servlet("Hi there!".getBytes(StandardCharsets.ISO_8859_1))), "/*");
+            contextHandlerCollection.addHandler(targetContextHandler.getCoreContextHandler());
+            return contextHandlerCollection;
+        });
+        assertThat("Performance assertions failure for " + payloadParams, succeeded, is(true));
+    }
 }